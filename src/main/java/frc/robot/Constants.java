@@ -10,6 +10,7 @@ import java.io.IOException;
 import com.revrobotics.CANSparkMax.IdleMode;
 
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFieldLayout.OriginPosition;
 import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
@@ -18,13 +19,75 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.util.Color;
+import frc.robot.lib.StatusFrameProfile;
+import frc.robot.lib.SwerveSetpointGenerator;
+import frc.robot.lib.VisionFilter;
 
 public class Constants {
 
+    public static final class CAN {
+        /**
+         * How often (in seconds) an unchanged setpoint is resent to a SPARK MAX anyway,
+         * in case the controller missed or lost the original frame.
+         */
+        public static final double kKeepAlivePeriod = 1.0;
+
+        /*
+         * How often (in seconds) every SPARK MAX is checked for a reset, since a reset or
+         * brownout puts its status frame periods back to the defaults.
+         */
+        public static final double kResetCheckPeriod = 0.5;
+
+        /*
+         * SPARK MAX status frame periods (ms) per device role, in frame order
+         * 0 (output/faults), 1 (velocity/current), 2 (position), 3 (analog),
+         * 4 (alternate encoder), 5 and 6 (duty cycle encoder).
+         */
+
+        /*
+         * Swerve driving motors: fast position for odometry, velocity for module state.
+         */
+        public static final StatusFrameProfile kDriveStatusFrames = new StatusFrameProfile(100, 20, 10, 500, 500, 500, 500);
+
+        /*
+         * Swerve turning motors: fast position for odometry, the analog absolute encoder for alignment.
+         */
+        public static final StatusFrameProfile kSteerStatusFrames = new StatusFrameProfile(100, 20, 10, 20, 500, 500, 500);
+
+        /*
+         * Arm tilt and extension motors: position for the arm commands and telemetry.
+         */
+        public static final StatusFrameProfile kArmStatusFrames = new StatusFrameProfile(100, 100, 20, 500, 500, 500, 500);
+
+        /*
+         * Intake motors: velocity for detecting the intake arm stalling.
+         */
+        public static final StatusFrameProfile kIntakeStatusFrames = new StatusFrameProfile(100, 20, 500, 500, 500, 500, 500);
+
+        /*
+         * Suction motors: open loop, nothing is read back.
+         */
+        public static final StatusFrameProfile kSuctionStatusFrames = new StatusFrameProfile(100, 500, 500, 500, 500, 500, 500);
+
+        /*
+         * Clamp motors: open loop, nothing is read back.
+         */
+        public static final StatusFrameProfile kClampStatusFrames = new StatusFrameProfile(100, 500, 500, 500, 500, 500, 500);
+    }
+
     public static final class Controllers {
         public static final int kDriverControllerPort = 0; 
         public static final int kManipulatorControllerPort = 1; 
         public static final double kDeadband = 0.1; 
+
+        // Driver input shaping
+        public static final double kTranslationExpo = 0.6; // 0 is linear, 1 is cubic
+        public static final double kRotationExpo = 0.4; // 0 is linear, 1 is cubic
+        public static final int kResponseCurveSize = 256; // lookup table entries
+        public static final double kTranslationSlewRate = 12.0; // meters per second squared
+        public static final double kRotationSlewRate = 6 * Math.PI; // radians per second squared
+        public static final double kPrecisionScale = 0.35; // fraction of full speed in precision mode
+        public static final double kPrecisionTriggerThreshold = 0.5;
     }
 
     public static final class Arm {
@@ -134,11 +197,12 @@ public class Constants {
         // Distance between centers of right and left wheels on robot
         public static final double kWheelBase = Units.inchesToMeters(21.25);
         // Distance between front and rear wheels on robot
-        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
+        public static final Translation2d[] kModuleTranslations = new Translation2d[] {
             new Translation2d(kWheelBase / 2, kTrackWidth / 2),
             new Translation2d(kWheelBase / 2, -kTrackWidth / 2),
             new Translation2d(-kWheelBase / 2, kTrackWidth / 2),
-            new Translation2d(-kWheelBase / 2, -kTrackWidth / 2));
+            new Translation2d(-kWheelBase / 2, -kTrackWidth / 2)};
+        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(kModuleTranslations);
     
         // Angular offsets of the modules relative to the chassis in radians
         public static final double kFrontLeftChassisAngularOffset = 2.7472 + Math.PI; 
@@ -158,6 +222,36 @@ public class Constants {
         public static final int kRearRightTurningCanId = 8;
     
         public static final boolean kGyroReversed = false;
+
+        // Odometry is sampled on its own thread, decoupled from the 20 ms robot loop
+        public static final double kOdometryFrequency = 250.0; // Hz
+        public static final int kOdometryBufferSize = 64; // samples, ~250 ms at kOdometryFrequency
+        public static final int kPoseHistorySize = 500; // samples, 2 s at kOdometryFrequency
+
+        // Module acceleration and steering limits applied by the setpoint generator
+        public static final SwerveSetpointGenerator.Limits kTeleopSetpointLimits =
+            new SwerveSetpointGenerator.Limits(8.0, 4 * Math.PI); // m/s^2, rad/s
+        public static final SwerveSetpointGenerator.Limits kAutoSetpointLimits =
+            new SwerveSetpointGenerator.Limits(6.0, 4 * Math.PI); // m/s^2, rad/s
+        public static final boolean kUseTeleopSetpointGenerator = true;
+        public static final boolean kUseAutoSetpointGenerator = false;
+
+        // Compensate chassis speeds for the sideways drift of rotating while translating
+        // over one loop, optionally looking ahead along the measured turn rate
+        public static final boolean kUseSkewCompensation = true;
+        public static final double kSkewCompensationLookahead = 0.0; // seconds of gyro rate
+
+        // Path following gains, shared by the auto commands and the warm-up
+        public static final double kPathTranslationP = 0.01;
+        public static final double kPathRotationP = 5.0;
+
+        // Heading hold for field-centric driving when the rotation stick is released
+        public static final boolean kUseHeadingHold = true;
+        public static final double kHeadingP = 4.0;
+        public static final double kHeadingI = 0;
+        public static final double kHeadingD = 0.1;
+        public static final double kHeadingMaxVelocity = 1.5 * Math.PI; // radians per second
+        public static final double kHeadingLatchRate = 10.0; // degrees per second
       }
     
       public static final class SwerveModule {
@@ -216,6 +310,20 @@ public class Constants {
     
         public static final int kDrivingMotorCurrentLimit = 50; // amps
         public static final int kTurningMotorCurrentLimit = 20; // amps
+
+        // Absolute encoder sampling, only while disabled or idle, used to reseed the turning encoder
+        public static final double kAbsoluteEncoderSamplePeriod = 0.02; // seconds
+        public static final int kAbsoluteEncoderWindowSize = 50; // samples
+        public static final double kAbsoluteEncoderSettledStdDev = 0.01; // radians
+        public static final double kAbsoluteEncoderSummaryPeriod = 1.0; // seconds between logged summaries
+        public static final double kIdleDrivingVelocity = 0.02; // meters per second
+        public static final double kIdleTurningVelocity = 0.05; // radians per second
+
+        // Continuous resynchronization of the turning encoder while steering is stationary
+        public static final boolean kSteeringResyncEnabled = true;
+        public static final int kSteeringDriftWindowSize = 25; // samples
+        public static final double kSteeringDriftThreshold = 0.05; // radians
+        public static final double kSteeringDriftMaxStdDev = 0.02; // radians
       }
 
       public static final class Intake {
@@ -322,12 +430,23 @@ public class Constants {
       }
 
       public static final class Vision {
-        public static AprilTagFieldLayout kAprilTagFieldLayout = null;
-        static {
+        /*
+         * The field layout with its origin at each alliance's wall, loaded once at startup
+         * and never modified.
+         */
+        public static final AprilTagFieldLayout kBlueAprilTagFieldLayout =
+            loadAprilTagFieldLayout(OriginPosition.kBlueAllianceWallRightSide);
+        public static final AprilTagFieldLayout kRedAprilTagFieldLayout =
+            loadAprilTagFieldLayout(OriginPosition.kRedAllianceWallRightSide);
+
+        private static AprilTagFieldLayout loadAprilTagFieldLayout(OriginPosition origin) {
             try {
-                kAprilTagFieldLayout = AprilTagFieldLayout.loadFromResource(AprilTagFields.k2023ChargedUp.m_resourceFile);
+                AprilTagFieldLayout layout = AprilTagFieldLayout.loadFromResource(AprilTagFields.k2023ChargedUp.m_resourceFile);
+                layout.setOrigin(origin);
+                return layout;
             } catch (IOException e) {
                 e.printStackTrace();
+                return null;
             }
         }
 
@@ -343,6 +462,67 @@ public class Constants {
                 new Translation3d(-0.16390, -0.18298, 0.59055),
                 new Rotation3d(0, 0, Units.degreesToRadians(-10))); 
 
+        /*
+         * How often each camera's background thread checks for a new result.
+         */
+        public static final long kPollPeriodMilliseconds = 10;
+
+        /*
+         * The number of estimated poses a camera can queue up for the main loop.
+         */
+        public static final int kResultQueueSize = 8;
+
+        /*
+         * Base standard deviations (meters, radians) of a vision measurement before it is
+         * scaled by distance and ambiguity. A single tag gives a poor heading.
+         */
+        public static final double kSingleTagXYStdDev = 0.5;
+        public static final double kSingleTagThetaStdDev = 2.0;
+        public static final double kMultiTagXYStdDev = 0.2;
+        public static final double kMultiTagThetaStdDev = 0.4;
+
+        /*
+         * The average tag distance squared (meters squared) at which the standard
+         * deviations double, and how much a fully ambiguous solution inflates them.
+         */
+        public static final double kStdDevDistanceScale = 9.0;
+        public static final double kStdDevAmbiguityScale = 4.0;
+
+        /*
+         * Limits used to reject vision measurements before they reach the pose estimator.
+         */
+        public static final VisionFilter.Thresholds kFilterThresholds =
+            new VisionFilter.Thresholds(
+                Units.inchesToMeters(651.25), // field length
+                Units.inchesToMeters(315.5), // field width
+                0.5, // field margin (m)
+                0.2, // single tag ambiguity
+                Units.degreesToRadians(15), // heading error
+                1.5, // innovation (m)
+                5, // agreeing rejected fixes before odometry is overruled
+                0.25); // agreement between rejected fixes (m)
+
+        /*
+         * Stricter limits used when vision is enabled during autonomous, where a bad
+         * measurement can pull the robot off its path.
+         */
+        public static final VisionFilter.Thresholds kAutoFilterThresholds =
+            new VisionFilter.Thresholds(
+                Units.inchesToMeters(651.25), // field length
+                Units.inchesToMeters(315.5), // field width
+                0.25, // field margin (m)
+                0.1, // single tag ambiguity
+                Units.degreesToRadians(5), // heading error
+                0.5, // innovation (m)
+                10, // agreeing rejected fixes before odometry is overruled
+                0.15); // agreement between rejected fixes (m)
+
+        /*
+         * Buckets of the histogram of distances between vision and odometry poses.
+         */
+        public static final double kInnovationBucketWidth = 0.1;
+        public static final int kInnovationBucketCount = 20;
+
       }
 
 }
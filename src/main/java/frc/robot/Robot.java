@@ -10,34 +10,57 @@ import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
+import frc.robot.lib.CachedSparkMax;
+import frc.robot.lib.CommandProfiler;
+import frc.robot.lib.JvmMonitor;
 import frc.robot.lib.Logger;
+import frc.robot.lib.LoopProfiler;
+import frc.robot.lib.PeriodicScheduler;
+import frc.robot.lib.RobotThreads;
 import frc.robot.lib.Telemetry;
+import frc.robot.lib.TunableParameter;
 
 public class Robot extends TimedRobot {
-  private static Robot m_robotInstance;
+  private static final PeriodicScheduler m_periodicScheduler = new PeriodicScheduler(kDefaultPeriod);
   private RobotContainer m_robotContainer;
   private Command m_autonomousCommand;
+  private LoopProfiler.Section m_schedulerTimer;
 
   @Override
   public void robotInit() {
-    m_robotInstance = this;
+    addPeriodic(m_periodicScheduler::run, kDefaultPeriod, kDefaultPeriod / 2);
     Logger.start();
     Telemetry.start(); 
+    JvmMonitor.start();
+    TunableParameter.start();
+    m_schedulerTimer = LoopProfiler.section("CommandScheduler");
     m_robotContainer = new RobotContainer();    
+    CachedSparkMax.logBusUtilization();
+    RobotThreads.start();
   }
 
   @Override
   public void robotPeriodic() {
+    LoopProfiler.startLoop();
+    m_schedulerTimer.start();
     CommandScheduler.getInstance().run();
+    m_schedulerTimer.stop();
+    LoopProfiler.endLoop();
   }
 
   @Override
   public void disabledInit() {
     Logger.mode(Mode.DISABLED);
+    m_robotContainer.disableRobot();
+    CommandProfiler.summarize();
+    RobotThreads.logReport();
   }
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    m_robotContainer.updateAlliance();
+    m_robotContainer.warmUp();
+  }
 
   @Override
   public void disabledExit() {}
@@ -45,6 +68,7 @@ public class Robot extends TimedRobot {
   @Override
   public void autonomousInit() {
     Logger.mode(Mode.AUTO);
+    m_robotContainer.startAutoLoopLog();
     m_autonomousCommand = m_robotContainer.getAutonomousCommand();
     if (m_autonomousCommand != null) {
       m_autonomousCommand.schedule();
@@ -53,7 +77,9 @@ public class Robot extends TimedRobot {
   }
 
   @Override
-  public void autonomousPeriodic() {}
+  public void autonomousPeriodic() {
+    m_robotContainer.logAutoLoop();
+  }
 
   @Override
   public void autonomousExit() {}
@@ -88,9 +114,17 @@ public class Robot extends TimedRobot {
   @Override
   public void testExit() {}
 
-  /** This function provides static access to create a custom periodic function in the current robot instance. */
-  public static void addCustomPeriodic(Runnable callback, double periodSeconds) {
-    m_robotInstance.addPeriodic(callback, periodSeconds, 0.333);
+  /**
+   * Adds a low priority custom periodic function to the robot's periodic scheduler, which
+   * spreads custom periodic functions across robot loops instead of running them together.
+   */
+  public static void addCustomPeriodic(String name, Runnable callback, double periodSeconds) {
+    addCustomPeriodic(name, callback, periodSeconds, PeriodicScheduler.Priority.LOW, 0.001);
+  }
+
+  /** Adds a custom periodic function with its own priority and time budget, in seconds. */
+  public static void addCustomPeriodic(String name, Runnable callback, double periodSeconds, PeriodicScheduler.Priority priority, double budgetSeconds) {
+    m_periodicScheduler.add(name, callback, periodSeconds, priority, budgetSeconds);
   }
   
   public static boolean isCompetitionMode() {
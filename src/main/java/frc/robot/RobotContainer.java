@@ -5,6 +5,8 @@
 
 package frc.robot;
 
+import java.util.List;
+
 import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 
@@ -42,11 +44,12 @@ import frc.robot.commands.controllers.RumbleControllers.RumblePattern;
 import frc.robot.commands.drive.DriveRobotCentric;
 import frc.robot.commands.drive.DriveWithJoysticks;
 import frc.robot.commands.drive.ResetSwerve;
+import frc.robot.commands.drive.SnapToHeading;
 import frc.robot.commands.drive.ZeroHeading;
 //import frc.robot.commands.intake.RunRollersInward;
 //import frc.robot.commands.intake.RunRollersOutward;
 import frc.robot.commands.suction.ToggleSuction;
-import frc.robot.lib.Utils;
+import frc.robot.lib.WarmUp;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 import frc.robot.subsystems.Clamps;
@@ -71,6 +74,8 @@ public class RobotContainer {
   private final XboxController m_manipulatorController = new XboxController(Constants.Controllers.kManipulatorControllerPort);
 
   private final SendableChooser<Command> m_autonomousChooser = new SendableChooser<Command>();
+  private final SendableChooser<Boolean> m_autonomousVisionChooser = new SendableChooser<Boolean>();
+  private WarmUp m_warmUp;
  
   public RobotContainer() {
     setupDrive(); 
@@ -83,9 +88,10 @@ public class RobotContainer {
     m_drive.setDefaultCommand(
       new DriveWithJoysticks(
         m_drive,
-        () -> Utils.applyDeadband(-m_driverController.getLeftY(), Constants.Controllers.kDeadband),
-        () -> Utils.applyDeadband(-m_driverController.getLeftX(), Constants.Controllers.kDeadband),
-        () -> Utils.applyDeadband(-m_driverController.getRightX(), Constants.Controllers.kDeadband)
+        () -> -m_driverController.getLeftY(),
+        () -> -m_driverController.getLeftX(),
+        () -> -m_driverController.getRightX(),
+        () -> m_driverController.getLeftTriggerAxis() > Constants.Controllers.kPrecisionTriggerThreshold
       )
     );
     m_drive.resetSwerve();
@@ -121,6 +127,19 @@ public class RobotContainer {
     // new Trigger(m_driverController::getBButton)
     //   .whileTrue(new RunRollersOutward(m_intake));
 
+    /* Snaps the robot to a field-centric heading */
+    new Trigger(m_driverController::getYButton)
+      .onTrue(new SnapToHeading(m_drive, 0));
+
+    new Trigger(m_driverController::getXButton)
+      .onTrue(new SnapToHeading(m_drive, 90));
+
+    new Trigger(m_driverController::getAButton)
+      .onTrue(new SnapToHeading(m_drive, 180));
+
+    new Trigger(m_driverController::getBButton)
+      .onTrue(new SnapToHeading(m_drive, 270));
+
     // MANIPULATOR
 
     /* Toggles Suction on or off */
@@ -191,6 +210,10 @@ public class RobotContainer {
     PathPlannerTrajectory wallBalancePath = PathPlanner.loadPath("Wall Balance", 2, 3);
     PathPlannerTrajectory dividerBalancePath = PathPlanner.loadPath("Divider Balance", 2, 3);
     PathPlannerTrajectory middleBalancePath = PathPlanner.loadPath("Middle Balance", 2, 3);
+
+    m_warmUp = new WarmUp(List.of(
+      balancePath, balanceMidPath, moveWallPath, moveDividerPath,
+      moveMiddlePath, wallBalancePath, dividerBalancePath, middleBalancePath));
     
     m_autonomousChooser.setDefaultOption("None", null);
 
@@ -225,9 +248,14 @@ public class RobotContainer {
       new AutoScoreBalance(m_drive, m_suction, m_armExtension, m_armTilt, m_intake, wallBalancePath, balancePath));
 
     SmartDashboard.putData("Auto/Command", m_autonomousChooser);
+
+    m_autonomousVisionChooser.setDefaultOption("Off", false);
+    m_autonomousVisionChooser.addOption("On", true);
+    SmartDashboard.putData("Auto/Vision", m_autonomousVisionChooser);
   }
 
   public Command getAutonomousCommand() {
+    m_drive.setAutoVisionEnabled(m_autonomousVisionChooser.getSelected());
     return m_autonomousChooser.getSelected();
   }
 
@@ -235,9 +263,33 @@ public class RobotContainer {
     m_lights.setPattern(Pattern.Heart, PanelLocation.Both);
   }
   
+  public void updateAlliance() {
+    m_drive.updateAlliance();
+  }
+
+  /** Stops the drive outright when the robot is disabled. */
+  public void disableRobot() {
+    m_drive.stop();
+  }
+
+  /** Warms up the autonomous drive code a little more each disabled loop until it is done. */
+  public void warmUp() {
+    m_warmUp.run();
+  }
+
+  /** Starts logging the timing of the first autonomous loops. */
+  public void startAutoLoopLog() {
+    m_warmUp.startAutoLoopLog();
+  }
+
+  /** Logs the timing of the first autonomous loops, to compare with and without warm-up. */
+  public void logAutoLoop() {
+    m_warmUp.logAutoLoop();
+  }
+
   public void resetRobot() {
       m_drive.resetSwerve();
-      m_drive.resetPhotonCameras();
+      m_drive.updateAlliance();
       m_suction.reset();
       m_armTilt.reset();
       m_armExtension.reset();
@@ -12,6 +12,7 @@ import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.robot.Constants;
 import frc.robot.commands.arm.ExtendArmToLength;
 import frc.robot.commands.arm.TiltArmToHeight;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 
@@ -25,17 +26,21 @@ public class MoveToHigh extends SequentialCommandGroup {
 
     addCommands(
       new ConditionalCommand(
-        new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition)
+        CommandProfiler.profile("MoveToHigh/Retract",
+          new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition))
           .withTimeout(Constants.Arm.kExtensionTimeOut),
         new WaitCommand(0.001), 
         () -> (armExtension.getEncoderPosition() > Constants.Arm.kExtensionResetPosition)),
 
-      new TiltArmToHeight(armTilt, speed, 10.0)
+      CommandProfiler.profile("MoveToHigh/Tilt",
+        new TiltArmToHeight(armTilt, speed, 10.0))
         .withTimeout(Constants.Arm.kTiltTimeOut),
       new ParallelCommandGroup(
-        new TiltArmToHeight(armTilt, speed, 15.5)
+        CommandProfiler.profile("MoveToHigh/FinalTilt",
+          new TiltArmToHeight(armTilt, speed, 15.5))
           .withTimeout(Constants.Arm.kTiltTimeOut),
-        new ExtendArmToLength(armExtension, speed, 27.5)
+        CommandProfiler.profile("MoveToHigh/Extend",
+          new ExtendArmToLength(armExtension, speed, 27.5))
           .withTimeout(Constants.Arm.kExtensionTimeOut))
     );
   }
@@ -11,6 +11,7 @@ import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.robot.Constants;
 import frc.robot.commands.arm.ExtendArmToLength;
 import frc.robot.commands.arm.TiltArmToHeight;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 
@@ -24,13 +25,16 @@ public class MoveToLow extends SequentialCommandGroup {
 
     addCommands(
       new ConditionalCommand(
-        new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition)
+        CommandProfiler.profile("MoveToLow/Retract",
+          new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition))
           .withTimeout(Constants.Arm.kExtensionTimeOut),
           new WaitCommand(0.001), 
         () -> (armExtension.getEncoderPosition() > Constants.Arm.kExtensionResetPosition)),
-      new TiltArmToHeight(armTilt, speed, 6.0)
+      CommandProfiler.profile("MoveToLow/Tilt",
+        new TiltArmToHeight(armTilt, speed, 6.0))
         .withTimeout(Constants.Arm.kTiltTimeOut),
-      new ExtendArmToLength(armExtension, speed, 10.5)
+      CommandProfiler.profile("MoveToLow/Extend",
+        new ExtendArmToLength(armExtension, speed, 10.5))
         .withTimeout(Constants.Arm.kExtensionTimeOut)
     );
   }
@@ -11,6 +11,7 @@ import edu.wpi.first.wpilibj2.command.WaitCommand;
 import frc.robot.Constants;
 import frc.robot.commands.arm.ExtendArmToLength;
 import frc.robot.commands.arm.TiltArmToHeight;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 
@@ -24,13 +25,16 @@ public class MoveToMedium extends SequentialCommandGroup {
 
     addCommands(
       new ConditionalCommand(
-        new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition)
+        CommandProfiler.profile("MoveToMedium/Retract",
+          new ExtendArmToLength(armExtension, speed, Constants.Arm.kExtensionResetPosition))
           .withTimeout(Constants.Arm.kExtensionTimeOut),
           new WaitCommand(0.001), 
         () -> (armExtension.getEncoderPosition() > Constants.Arm.kExtensionResetPosition)),
-      new TiltArmToHeight(armTilt, speed, 13.5)
+      CommandProfiler.profile("MoveToMedium/Tilt",
+        new TiltArmToHeight(armTilt, speed, 13.5))
         .withTimeout(Constants.Arm.kTiltTimeOut),
-      new ExtendArmToLength(armExtension, speed, 13.0)
+      CommandProfiler.profile("MoveToMedium/Extend",
+        new ExtendArmToLength(armExtension, speed, 13.0))
         .withTimeout(Constants.Arm.kExtensionTimeOut)
     );
   }
@@ -9,6 +9,7 @@ import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.Constants;
 import frc.robot.commands.arm.TiltArmToHeight;
 import frc.robot.commands.suction.EnableSuction;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 import frc.robot.subsystems.Suction;
@@ -22,9 +23,11 @@ public class MoveToPickup extends SequentialCommandGroup {
     Suction suction
   ) {
     addCommands(
-      new TiltArmToHeight(armTilt, speed, 12.6)
+      CommandProfiler.profile("MoveToPickup/Tilt",
+        new TiltArmToHeight(armTilt, speed, 12.6))
         .withTimeout(Constants.Arm.kTiltTimeOut),
-      new EnableSuction(suction)
+      CommandProfiler.profile("MoveToPickup/EnableSuction",
+        new EnableSuction(suction))
     );
   }
 }
\ No newline at end of file
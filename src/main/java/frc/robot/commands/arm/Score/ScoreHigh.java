@@ -9,6 +9,7 @@ import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.Constants;
 import frc.robot.commands.arm.TiltArmToHeight;
 import frc.robot.commands.arm.MoveTo.MoveToHigh;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 import frc.robot.subsystems.Suction;
@@ -22,8 +23,10 @@ public class ScoreHigh extends SequentialCommandGroup {
     Suction suction
   ) {
     addCommands(
-      new MoveToHigh(armExtension, armTilt, speed),
-      new TiltArmToHeight(armTilt, speed * 0.5, 14.5)
+      CommandProfiler.profile("ScoreHigh/MoveToHigh",
+        new MoveToHigh(armExtension, armTilt, speed)),
+      CommandProfiler.profile("ScoreHigh/Tilt",
+        new TiltArmToHeight(armTilt, speed * 0.5, 14.5))
         .withTimeout(Constants.Arm.kTiltTimeOut)
     );
   }
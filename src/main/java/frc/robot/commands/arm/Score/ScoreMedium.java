@@ -9,6 +9,7 @@ import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.Constants;
 import frc.robot.commands.arm.TiltArmToHeight;
 import frc.robot.commands.arm.MoveTo.MoveToMedium;
+import frc.robot.lib.CommandProfiler;
 import frc.robot.subsystems.ArmExtension;
 import frc.robot.subsystems.ArmTilt;
 import frc.robot.subsystems.Suction;
@@ -22,8 +23,10 @@ public class ScoreMedium extends SequentialCommandGroup {
     Suction suction
   ) {
     addCommands(
-      new MoveToMedium(armExtension, armTilt, speed),
-      new TiltArmToHeight(armTilt, speed * 0.5, 11.5)
+      CommandProfiler.profile("ScoreMedium/MoveToMedium",
+        new MoveToMedium(armExtension, armTilt, speed)),
+      CommandProfiler.profile("ScoreMedium/Tilt",
+        new TiltArmToHeight(armTilt, speed * 0.5, 11.5))
         .withTimeout(Constants.Arm.kTiltTimeOut)
     );
   }
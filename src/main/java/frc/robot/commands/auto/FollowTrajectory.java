@@ -6,9 +6,11 @@
 package frc.robot.commands.auto;
 
 import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
 import com.pathplanner.lib.commands.PPSwerveControllerCommand;
 
 import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 
@@ -16,28 +18,45 @@ import frc.robot.Constants;
 import frc.robot.subsystems.Drive;
 
 public class FollowTrajectory extends SequentialCommandGroup {
+    private final Drive m_drive;
+
     public FollowTrajectory(PathPlannerTrajectory trajectory, boolean isFirstPath, Drive drive) {
-        PIDController xPidController = new PIDController(0.01, 0, 0);
-        PIDController yPidController = new PIDController(0.01, 0, 0);
-        PIDController tPidController = new PIDController(5, 0, 0);
+        m_drive = drive;
+        PIDController xPidController = new PIDController(Constants.Drive.kPathTranslationP, 0, 0);
+        PIDController yPidController = new PIDController(Constants.Drive.kPathTranslationP, 0, 0);
+        PIDController tPidController = new PIDController(Constants.Drive.kPathRotationP, 0, 0);
         addCommands(
             new InstantCommand(() -> {
                 // Reset odometry for the first path you run during auto
                 if (isFirstPath) {
                     drive.resetPose(trajectory.getInitialHolonomicPose());
                 }
+                drive.setSetpointLimits(
+                    Constants.Drive.kUseAutoSetpointGenerator ? Constants.Drive.kAutoSetpointLimits : null);
             }),
             new PPSwerveControllerCommand(
                 trajectory,
                 drive::getPose,
-                Constants.Drive.kDriveKinematics,
                 // The PID controllers set to 0 work best since the swerve modules are already
                 // being tuned in the Drive PID Controllers.
                 xPidController,
                 yPidController,
                 tPidController,
-                drive::setModuleStates,
+                // Chassis speeds rather than module states, so Drive can compensate for skew.
+                drive::setChassisSpeeds,
                 true,
-                drive));
+                drive),
+            new InstantCommand(() -> {
+                PathPlannerState endState = PathPlannerTrajectory.transformStateForAlliance(
+                    trajectory.getEndState(), DriverStation.getAlliance());
+                drive.logPathEndError(endState.poseMeters);
+            }));
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        super.end(interrupted);
+        // Don't leave the auto limits in force for the next drive command.
+        m_drive.setSetpointLimits(null);
     }
 }
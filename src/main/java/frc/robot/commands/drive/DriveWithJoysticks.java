@@ -5,46 +5,110 @@
 
 package frc.robot.commands.drive;
 
+import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 
+import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 
 import frc.robot.Constants;
+import frc.robot.lib.ResponseCurve;
+import frc.robot.lib.Utils;
 import frc.robot.subsystems.Drive;
 
+/**
+ * Drives the robot from raw joystick axes. The translation stick gets a radial deadband
+ * so diagonals are not distorted, both sticks go through response curves for finer
+ * control near center, outputs are rate limited, and precision mode scales everything
+ * down for lining up. Translation is rate limited on its speed only, along the stick
+ * direction, so the direction is never bent while the speed ramps.
+ */
 public class DriveWithJoysticks extends CommandBase {
+  private static final ResponseCurve m_translationCurve =
+    new ResponseCurve(Constants.Controllers.kTranslationExpo, Constants.Controllers.kResponseCurveSize);
+  private static final ResponseCurve m_rotationCurve =
+    new ResponseCurve(Constants.Controllers.kRotationExpo, Constants.Controllers.kResponseCurveSize);
+
   private final Drive m_drive;
   private final DoubleSupplier m_translationXSupplier;
   private final DoubleSupplier m_translationYSupplier;
   private final DoubleSupplier m_rotationSupplier;
+  private final BooleanSupplier m_precisionModeSupplier;
+
+  private final SlewRateLimiter m_translationLimiter = new SlewRateLimiter(Constants.Controllers.kTranslationSlewRate);
+  private final SlewRateLimiter m_rotationLimiter = new SlewRateLimiter(Constants.Controllers.kRotationSlewRate);
+
+  // The last stick direction, kept so the speed can ramp down along it after release.
+  private double m_directionX = 1.0;
+  private double m_directionY = 0.0;
 
+  /**
+   * @param drive the drive subsystem.
+   * @param translationXSupplier the raw forward axis, from -1 to 1.
+   * @param translationYSupplier the raw sideways axis, from -1 to 1.
+   * @param rotationSupplier the raw rotation axis, from -1 to 1.
+   * @param precisionModeSupplier true while precision mode is held.
+   */
   public DriveWithJoysticks(
     Drive drive,
     DoubleSupplier translationXSupplier,
     DoubleSupplier translationYSupplier,
-    DoubleSupplier rotationSupplier
+    DoubleSupplier rotationSupplier,
+    BooleanSupplier precisionModeSupplier
   ) {
     m_drive = drive;
 
     m_translationXSupplier = translationXSupplier;
     m_translationYSupplier = translationYSupplier;
     m_rotationSupplier = rotationSupplier;
+    m_precisionModeSupplier = precisionModeSupplier;
 
     addRequirements(drive);
   }
 
+  @Override
+  public void initialize() {
+    m_drive.setSetpointLimits(
+      Constants.Drive.kUseTeleopSetpointGenerator ? Constants.Drive.kTeleopSetpointLimits : null);
+    m_drive.clearHeadingTarget();
+    m_translationLimiter.reset(0);
+    m_rotationLimiter.reset(0);
+  }
+
   @Override
   public void execute() {
+    double x = m_translationXSupplier.getAsDouble();
+    double y = m_translationYSupplier.getAsDouble();
+    double rotation = m_rotationSupplier.getAsDouble();
+
+    // Radial deadband: shape the length of the stick vector and keep its direction.
+    double magnitude = Math.hypot(x, y);
+    double shaped = 0.0;
+    if (magnitude >= Constants.Controllers.kDeadband) {
+      shaped = m_translationCurve.apply(
+        (Math.min(magnitude, 1.0) - Constants.Controllers.kDeadband) / (1.0 - Constants.Controllers.kDeadband));
+      m_directionX = x / magnitude;
+      m_directionY = y / magnitude;
+    }
+    rotation = m_rotationCurve.apply(Utils.applyDeadband(rotation, Constants.Controllers.kDeadband));
+
+    double scale = m_precisionModeSupplier.getAsBoolean() ? Constants.Controllers.kPrecisionScale : 1.0;
+
+    // Radial slew: limit the speed, not each axis, so the axes never reach their targets
+    // at different times and bend the direction the deadband kept.
+    double speed = m_translationLimiter.calculate(shaped * scale * Constants.Drive.kMaxSpeedMetersPerSecond);
     m_drive.drive(
-      m_translationXSupplier.getAsDouble() * Constants.Drive.kMaxSpeedMetersPerSecond,
-      m_translationYSupplier.getAsDouble() * Constants.Drive.kMaxSpeedMetersPerSecond, 
-      m_rotationSupplier.getAsDouble() * Constants.Drive.kMaxAngularSpeed
+      m_directionX * speed,
+      m_directionY * speed,
+      m_rotationLimiter.calculate(rotation * scale * Constants.Drive.kMaxAngularSpeed)
     );
   }
 
   @Override
   public void end(boolean interrupted) {
-    m_drive.drive(0, 0, 0);
+    m_drive.stop();
+    // Don't leave the teleop limits in force for the next drive command.
+    m_drive.setSetpointLimits(null);
   }
 
   @Override
@@ -0,0 +1,40 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.commands.drive;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+import frc.robot.subsystems.Drive;
+
+/**
+ * Turns the robot to a field-centric heading and holds it until the driver rotates. This
+ * does not require the drive, so the driver keeps translating while the robot turns.
+ */
+public class SnapToHeading extends CommandBase {
+  private final Drive m_drive;
+  private final double m_degrees;
+
+  public SnapToHeading(Drive drive, double degrees) {
+    m_drive = drive;
+    m_degrees = degrees;
+  }
+
+  @Override
+  public void initialize() {
+    m_drive.snapToHeading(m_degrees);
+  }
+
+  @Override
+  public void execute() {}
+
+  @Override
+  public void end(boolean interrupted) {}
+
+  @Override
+  public boolean isFinished() {
+    return true;
+  }
+}
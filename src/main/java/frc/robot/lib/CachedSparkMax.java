@@ -0,0 +1,237 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.FaultID;
+import com.revrobotics.SparkMaxPIDController;
+
+import edu.wpi.first.wpilibj.Timer;
+
+import frc.robot.Constants;
+import frc.robot.Robot;
+
+/**
+ * A SPARK MAX that remembers the last setpoint and output range it sent over CAN and
+ * suppresses writes that would not change anything. Identical frames are still resent
+ * every {@link Constants.CAN#kKeepAlivePeriod} seconds so the controller can never stay
+ * out of sync for long, and anything that commands the motor around the cache (stopping,
+ * disabling or setting a voltage) forgets the cached setpoint. Sent and suppressed frame
+ * counts are kept per device.
+ *
+ * Status frame periods are not saved by burnFlash(), so a controller that resets or
+ * browns out goes back to the default periods. Every device is checked for a reset
+ * periodically and its profile is applied again when one is found.
+ */
+public class CachedSparkMax extends CANSparkMax {
+  private static final List<CachedSparkMax> m_devices = new ArrayList<>();
+  private static long m_resetCount = 0;
+
+  static {
+    Telemetry.addDouble("CAN/Resets", () -> m_resetCount, 1.0);
+    Robot.addCustomPeriodic("CachedSparkMax/Resets", CachedSparkMax::checkForResets, Constants.CAN.kResetCheckPeriod);
+  }
+
+  private final String m_name;
+  private final StatusFrameProfile m_statusFrameProfile;
+  private final SparkMaxPIDController m_pidController;
+  private boolean m_isStatusFramesApplied = false;
+
+  private double m_lastValue = Double.NaN;
+  private ControlType m_lastControlType = null;
+  private double m_lastSentTimestamp = 0.0;
+
+  private double m_lastMinOutput = Double.NaN;
+  private double m_lastMaxOutput = Double.NaN;
+  private double m_lastOutputRangeTimestamp = 0.0;
+
+  private long m_sentCount = 0;
+  private long m_suppressedCount = 0;
+
+  /**
+   * @param name a readable name for the device, used for telemetry.
+   * @param deviceId the CAN ID of the SPARK MAX.
+   * @param type the type of motor connected to the controller.
+   * @param statusFrameProfile the status frame periods for the role of this device.
+   */
+  public CachedSparkMax(String name, int deviceId, MotorType type, StatusFrameProfile statusFrameProfile) {
+    super(deviceId, type);
+    m_name = name;
+    m_statusFrameProfile = statusFrameProfile;
+    m_pidController = getPIDController();
+    m_devices.add(this);
+
+    Telemetry.addDouble("CAN/" + name + "/FramesSent", this::getSentCount, 1.0);
+    Telemetry.addDouble("CAN/" + name + "/FramesSuppressed", this::getSuppressedCount, 1.0);
+  }
+
+  /**
+   * Sets the status frame periods from this device's profile. Call after
+   * restoreFactoryDefaults() and the rest of the configuration, since a factory reset
+   * puts the periods back to their defaults. The periods are not saved to flash, so from
+   * then on they are applied again whenever the controller resets.
+   */
+  public void applyStatusFrames() {
+    m_statusFrameProfile.apply(this);
+    // Clears the sticky reset fault from power on, so the next one means a new reset.
+    clearFaults();
+    m_isStatusFramesApplied = true;
+  }
+
+  /** Applies the status frames again on every configured device that has reset since the last check. */
+  private static void checkForResets() {
+    for (int i = 0; i < m_devices.size(); i += 1) {
+      CachedSparkMax device = m_devices.get(i);
+      if (device.m_isStatusFramesApplied && device.getStickyFault(FaultID.kHasReset)) {
+        device.applyStatusFrames();
+        device.invalidate(); // the reset also dropped the setpoint and output range
+        m_resetCount += 1;
+        Logger.log("SPARK MAX " + device.m_name + " reset, status frame periods applied again");
+      }
+    }
+  }
+
+  /** @return every cached SPARK MAX that has been created. */
+  public static List<CachedSparkMax> getDevices() {
+    return Collections.unmodifiableList(m_devices);
+  }
+
+  /** Logs the estimated CAN bus load from the status frames of every device, compared to the defaults. */
+  public static void logBusUtilization() {
+    double framesPerSecond = 0.0;
+    for (CachedSparkMax device : m_devices) {
+      framesPerSecond += device.m_statusFrameProfile.getFramesPerSecond();
+    }
+    double defaultFramesPerSecond = m_devices.size() * StatusFrameProfile.kDefault.getFramesPerSecond();
+    Logger.log(String.format(
+      "SPARK MAX status frames: %d devices, %.0f frames/s (~%.1f%% of the CAN bus), defaults would be %.0f frames/s (~%.1f%%)",
+      m_devices.size(),
+      framesPerSecond,
+      StatusFrameProfile.estimateBusUtilization(framesPerSecond) * 100,
+      defaultFramesPerSecond,
+      StatusFrameProfile.estimateBusUtilization(defaultFramesPerSecond) * 100));
+  }
+
+  /**
+   * Sets the duty cycle output of the motor, skipping the write if it matches the last
+   * frame sent.
+   *
+   * @param speed the duty cycle, between -1.0 and 1.0.
+   */
+  @Override
+  public void set(double speed) {
+    if (shouldSend(speed, ControlType.kDutyCycle)) {
+      super.set(speed);
+    }
+  }
+
+  /**
+   * Sets the closed loop setpoint of the controller, skipping the write if it matches
+   * the last frame sent.
+   *
+   * @param value the setpoint, in the units of the control type.
+   * @param controlType the closed loop control type.
+   */
+  public void setReference(double value, ControlType controlType) {
+    if (shouldSend(value, controlType)) {
+      m_pidController.setReference(value, controlType);
+    }
+  }
+
+  /**
+   * Sets the closed loop output range, skipping the write if it matches the last frame
+   * sent. Like setpoints, an unchanged range is still resent after the keep-alive period.
+   *
+   * @param minOutput the minimum output, between -1.0 and 1.0.
+   * @param maxOutput the maximum output, between -1.0 and 1.0.
+   */
+  public void setOutputRange(double minOutput, double maxOutput) {
+    double timestamp = Timer.getFPGATimestamp();
+    if (minOutput == m_lastMinOutput
+        && maxOutput == m_lastMaxOutput
+        && timestamp - m_lastOutputRangeTimestamp < Constants.CAN.kKeepAlivePeriod) {
+      m_suppressedCount += 1;
+      return;
+    }
+    m_pidController.setOutputRange(minOutput, maxOutput);
+    m_lastMinOutput = minOutput;
+    m_lastMaxOutput = maxOutput;
+    m_lastOutputRangeTimestamp = timestamp;
+    m_sentCount += 1;
+  }
+
+  /** Stops the motor and forgets the cached setpoint, so the next setpoint is always sent. */
+  @Override
+  public void stopMotor() {
+    super.stopMotor();
+    invalidateSetpoint();
+  }
+
+  /** Disables the motor and forgets the cached setpoint, so the next setpoint is always sent. */
+  @Override
+  public void disable() {
+    super.disable();
+    invalidateSetpoint();
+  }
+
+  /**
+   * Sets the voltage output of the motor and forgets the cached setpoint, so the next
+   * setpoint is always sent.
+   *
+   * @param outputVolts the voltage to output.
+   */
+  @Override
+  public void setVoltage(double outputVolts) {
+    super.setVoltage(outputVolts);
+    invalidateSetpoint();
+  }
+
+  /** Forgets the cached state so the next write is always sent. */
+  public void invalidate() {
+    invalidateSetpoint();
+    m_lastMinOutput = Double.NaN;
+    m_lastMaxOutput = Double.NaN;
+  }
+
+  private void invalidateSetpoint() {
+    m_lastValue = Double.NaN;
+    m_lastControlType = null;
+  }
+
+  private boolean shouldSend(double value, ControlType controlType) {
+    double timestamp = Timer.getFPGATimestamp();
+    if (value == m_lastValue
+        && controlType == m_lastControlType
+        && timestamp - m_lastSentTimestamp < Constants.CAN.kKeepAlivePeriod) {
+      m_suppressedCount += 1;
+      return false;
+    }
+    m_lastValue = value;
+    m_lastControlType = controlType;
+    m_lastSentTimestamp = timestamp;
+    m_sentCount += 1;
+    return true;
+  }
+
+  /** @return the readable name of the device. */
+  public String getName() {
+    return m_name;
+  }
+
+  /** @return the number of frames written to the bus. */
+  public long getSentCount() {
+    return m_sentCount;
+  }
+
+  /** @return the number of writes skipped because nothing changed. */
+  public long getSuppressedCount() {
+    return m_suppressedCount;
+  }
+}
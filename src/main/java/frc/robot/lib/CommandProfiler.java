@@ -0,0 +1,143 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+
+/**
+ * Records how long each kind of command runs, from initialize to finish or interrupt,
+ * using the command scheduler hooks set up by {@link Logger}. Those hooks only see
+ * scheduled commands, so steps inside command groups are wrapped with
+ * {@link #profile(String, Command)} where the groups are built. Counts, interrupt rates
+ * and a histogram of run times are kept per command class or step name and summarized
+ * to NetworkTables and the log when {@link #summarize()} is called at the end of a match.
+ * Only called from the main robot thread.
+ */
+public final class CommandProfiler {
+
+  // Upper edges of the run time histogram buckets, in seconds; the last bucket is open ended.
+  private static final double[] kBucketEdges = { 0.02, 0.05, 0.1, 0.25, 0.5, 1.0, 2.0, 3.0, 5.0, 10.0, 15.0 };
+
+  private static final class Statistics {
+    final String name;
+    long count = 0;
+    long interruptedCount = 0;
+    double totalTime = 0.0;
+    double maxTime = 0.0;
+    final long[] histogram = new long[kBucketEdges.length + 1];
+
+    Statistics(String name) {
+      this.name = name;
+    }
+  }
+
+  // Keyed by command class for scheduled commands and by name for profiled steps.
+  private static final Map<Object, Statistics> m_statistics = new HashMap<>();
+  private static final Map<Command, Double> m_startTimestamps = new IdentityHashMap<>();
+
+  /**
+   * Records the start of a command.
+   *
+   * @param command the command that is starting.
+   */
+  public static void start(Command command) {
+    m_startTimestamps.put(command, Timer.getFPGATimestamp());
+  }
+
+  /**
+   * Records the end of a command.
+   *
+   * @param command the command that is ending.
+   * @param isInterrupted true if the command was interrupted.
+   */
+  public static void end(Command command, boolean isInterrupted) {
+    Double startTimestamp = m_startTimestamps.remove(command);
+    if (startTimestamp == null) { return; }
+    record(command.getClass(), Timer.getFPGATimestamp() - startTimestamp, isInterrupted);
+  }
+
+  /**
+   * Wraps a step of a command group so its run time is recorded under its own name,
+   * since the scheduler hooks only see the group. Apply any timeout outside the wrapper,
+   * so steps that time out are counted as interrupted.
+   *
+   * @param name the name of the step, such as "ScoreHigh/Tilt".
+   * @param command the step.
+   * @return the wrapped step.
+   */
+  public static Command profile(String name, Command command) {
+    return new WrapperCommand(command) {
+      private double m_startTimestamp = 0.0;
+
+      @Override
+      public void initialize() {
+        m_startTimestamp = Timer.getFPGATimestamp();
+        super.initialize();
+      }
+
+      @Override
+      public void end(boolean interrupted) {
+        super.end(interrupted);
+        record(name, Timer.getFPGATimestamp() - m_startTimestamp, interrupted);
+      }
+    };
+  }
+
+  private static void record(Object key, double time, boolean isInterrupted) {
+    Statistics statistics = m_statistics.get(key);
+    if (statistics == null) {
+      statistics = new Statistics(key instanceof Class ? ((Class<?>)key).getSimpleName() : key.toString());
+      m_statistics.put(key, statistics);
+    }
+    statistics.count += 1;
+    if (isInterrupted) {
+      statistics.interruptedCount += 1;
+    }
+    statistics.totalTime += time;
+    statistics.maxTime = Math.max(statistics.maxTime, time);
+
+    int bucket = 0;
+    while (bucket < kBucketEdges.length && time > kBucketEdges[bucket]) {
+      bucket += 1;
+    }
+    statistics.histogram[bucket] += 1;
+  }
+
+  /**
+   * Publishes a summary of every command class and profiled step that has run to
+   * NetworkTables under Commands/ and writes it to the log. Call when a match ends.
+   */
+  public static void summarize() {
+    if (m_statistics.isEmpty()) { return; }
+
+    Logger.log("Command run times (count, interrupted, mean s, max s, histogram upper edges " + Arrays.toString(kBucketEdges) + "):");
+    for (Statistics statistics : m_statistics.values()) {
+      double meanTime = statistics.totalTime / statistics.count;
+      String key = "Commands/" + statistics.name + "/";
+      SmartDashboard.putNumber(key + "Count", statistics.count);
+      SmartDashboard.putNumber(key + "InterruptRate", (double)statistics.interruptedCount / statistics.count);
+      SmartDashboard.putNumber(key + "MeanTime", meanTime);
+      SmartDashboard.putNumber(key + "MaxTime", statistics.maxTime);
+      SmartDashboard.putNumberArray(key + "Histogram", Arrays.stream(statistics.histogram).asDoubleStream().toArray());
+
+      Logger.log(String.format("  %s: %d, %d, %.3f, %.3f, %s",
+        statistics.name,
+        statistics.count,
+        statistics.interruptedCount,
+        meanTime,
+        statistics.maxTime,
+        Arrays.toString(statistics.histogram)));
+    }
+  }
+}
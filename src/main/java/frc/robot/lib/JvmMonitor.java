@@ -0,0 +1,163 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+
+import frc.robot.Robot;
+
+/**
+ * Publishes the health of the JVM: garbage collection counts and pause times, heap use
+ * per memory pool, and how many bytes the main robot thread allocates each loop. Loops
+ * during which a collection finished are counted so pauses can be matched to slow loops,
+ * and {@link LoopProfiler} says so when an overrun coincides with one.
+ */
+public final class JvmMonitor {
+
+  private static final double kHeapUpdatePeriod = 1.0;
+  private static final double kTelemetryPeriod = 0.25;
+  private static final long kLongPauseMilliseconds = 10; // pauses at least this long are logged
+
+  // Written by the JMX notification thread, read by the robot loop.
+  private static final AtomicLong m_collectionCount = new AtomicLong();
+  private static final AtomicLong m_collectionTime = new AtomicLong();
+  private static final AtomicLong m_maxPauseTime = new AtomicLong();
+
+  private static final List<MemoryPoolMXBean> m_heapPools = new ArrayList<>();
+  private static double[] m_heapPoolUsed;
+  private static double m_heapUsed = 0.0;
+  private static double m_heapMax = 0.0;
+
+  private static com.sun.management.ThreadMXBean m_threadBean = null;
+  private static long m_mainThreadId;
+  private static long m_lastAllocatedBytes = 0;
+  private static double m_allocatedBytesPerLoop = 0.0;
+  private static double m_maxAllocatedBytesPerLoop = 0.0;
+
+  private static long m_lastCollectionCount = 0;
+  private static long m_loopsWithCollection = 0;
+  private static boolean m_isCollectionInLoop = false;
+
+  /**
+   * Starts monitoring. Call from robotInit, on the main robot thread, after
+   * {@link Telemetry#start()}.
+   */
+  public static void start() {
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (bean instanceof NotificationEmitter) {
+        ((NotificationEmitter)bean).addNotificationListener(
+          (notification, handback) -> onNotification(notification), null, null);
+      }
+    }
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        m_heapPools.add(pool);
+      }
+    }
+    m_heapPoolUsed = new double[m_heapPools.size()];
+
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+      if (threadBean.isThreadAllocatedMemorySupported()) {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        m_threadBean = threadBean;
+        m_mainThreadId = Thread.currentThread().getId();
+        m_lastAllocatedBytes = threadBean.getThreadAllocatedBytes(m_mainThreadId);
+      }
+    }
+
+    Telemetry.addDouble("JVM/GC/Count", () -> m_collectionCount.get(), kTelemetryPeriod);
+    Telemetry.addDouble("JVM/GC/Time", () -> m_collectionTime.get() / 1e3, kTelemetryPeriod);
+    Telemetry.addDouble("JVM/GC/MaxPause", () -> m_maxPauseTime.get() / 1e3, kTelemetryPeriod);
+    Telemetry.addDouble("JVM/GC/LoopsWithCollection", () -> m_loopsWithCollection, kTelemetryPeriod);
+    Telemetry.addDouble("JVM/Heap/Used", () -> m_heapUsed, kHeapUpdatePeriod, 1e5);
+    Telemetry.addDouble("JVM/Heap/Max", () -> m_heapMax, kHeapUpdatePeriod);
+    for (int i = 0; i < m_heapPools.size(); i += 1) {
+      int index = i;
+      Telemetry.addDouble("JVM/Heap/" + m_heapPools.get(i).getName() + "/Used",
+        () -> m_heapPoolUsed[index], kHeapUpdatePeriod, 1e5);
+    }
+    if (m_threadBean != null) {
+      Telemetry.addDouble("JVM/AllocatedBytesPerLoop", () -> m_allocatedBytesPerLoop, kTelemetryPeriod, 100);
+      Telemetry.addDouble("JVM/MaxAllocatedBytesPerLoop", () -> m_maxAllocatedBytesPerLoop, kTelemetryPeriod);
+    }
+
+    Robot.addCustomPeriodic("JvmMonitor/Loop", JvmMonitor::updateLoop, TimedRobot.kDefaultPeriod, PeriodicScheduler.Priority.HIGH, 0.0005);
+    Robot.addCustomPeriodic("JvmMonitor/Heap", JvmMonitor::updateHeap, kHeapUpdatePeriod, PeriodicScheduler.Priority.LOW, 0.001);
+  }
+
+  /** @return the number of garbage collections that have finished since the monitor started. */
+  public static long getCollectionCount() {
+    return m_collectionCount.get();
+  }
+
+  /** @return true if a garbage collection finished during the last robot loop. */
+  public static boolean isCollectionInLoop() {
+    return m_isCollectionInLoop;
+  }
+
+  private static void onNotification(Notification notification) {
+    if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+      return;
+    }
+    GarbageCollectionNotificationInfo info =
+      GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData());
+    long duration = info.getGcInfo().getDuration();
+    m_collectionCount.incrementAndGet();
+    m_collectionTime.addAndGet(duration);
+    m_maxPauseTime.accumulateAndGet(duration, Math::max);
+    if (duration >= kLongPauseMilliseconds) {
+      Logger.log(String.format("GC pause: %s %d ms (%s)", info.getGcName(), duration, info.getGcCause()));
+    }
+  }
+
+  /** Runs once per robot loop on the main thread. */
+  private static void updateLoop() {
+    long collectionCount = m_collectionCount.get();
+    m_isCollectionInLoop = collectionCount != m_lastCollectionCount;
+    if (m_isCollectionInLoop) {
+      m_loopsWithCollection += 1;
+    }
+    m_lastCollectionCount = collectionCount;
+
+    if (m_threadBean != null) {
+      long allocatedBytes = m_threadBean.getThreadAllocatedBytes(m_mainThreadId);
+      m_allocatedBytesPerLoop = allocatedBytes - m_lastAllocatedBytes;
+      m_maxAllocatedBytesPerLoop = Math.max(m_maxAllocatedBytesPerLoop, m_allocatedBytesPerLoop);
+      m_lastAllocatedBytes = allocatedBytes;
+    }
+  }
+
+  private static void updateHeap() {
+    double heapUsed = 0.0;
+    double heapMax = 0.0;
+    for (int i = 0; i < m_heapPools.size(); i += 1) {
+      MemoryPoolMXBean pool = m_heapPools.get(i);
+      MemoryUsage usage = pool.getUsage();
+      m_heapPoolUsed[i] = usage.getUsed();
+      heapUsed += usage.getUsed();
+      heapMax += Math.max(usage.getMax(), 0);
+    }
+    m_heapUsed = heapUsed;
+    m_heapMax = heapMax;
+  }
+}
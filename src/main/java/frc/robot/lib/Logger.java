@@ -7,6 +7,8 @@ package frc.robot.lib;
 
 import static java.util.stream.Collectors.joining;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Stream;
 
 import edu.wpi.first.wpilibj.DataLogManager;
@@ -20,28 +22,73 @@ import frc.robot.Robot;
 /**
  * This class provides methods for logging messages to the RioLog as the robot
  * starts, the robot mode changes, and as commands start and end.
+ *
+ * Logging never formats or writes on the calling thread. Events are stamped with the
+ * time and placed in a preallocated, bounded, lock-free queue, and a low priority
+ * background thread formats and writes them. When the queue is full events are dropped
+ * and counted rather than blocking the robot loop.
  */
 public final class Logger {
 
+  private static final int kQueueSize = 256; // must be a power of two
+  private static final long kIdleSleepMilliseconds = 20;
+
+  private static final int kMessage = 0;
+  private static final int kCommandStart = 1;
+  private static final int kCommandEnd = 2;
+  private static final int kCommandStartWithSettings = 3;
+
+  /** One queued log event. Slots are reused, so nothing is allocated per event. */
+  private static final class Event {
+    double timestamp;
+    int type;
+    String message;
+    Class<?> commandClass;
+    Object[] settings;
+    boolean isInterrupted;
+  }
+
+  private static final ClassValue<String> m_commandNames = new ClassValue<String>() {
+    @Override
+    protected String computeValue(Class<?> type) {
+      return type.getSimpleName();
+    }
+  };
+
+  // A bounded multi-producer, single-consumer queue. Each slot's sequence number says
+  // whether it is free for the producer claiming that position or ready for the writer.
+  private static final Event[] m_events = new Event[kQueueSize];
+  private static final AtomicLongArray m_sequences = new AtomicLongArray(kQueueSize);
+  private static final AtomicLong m_writeIndex = new AtomicLong();
+  private static final AtomicLong m_droppedCount = new AtomicLong();
+  private static long m_readIndex = 0; // only used by the writer thread
+
   static {
+    for (int i = 0; i < kQueueSize; i += 1) {
+      m_events[i] = new Event();
+      m_sequences.set(i, i);
+    }
+
     DataLogManager.start();
     DriverStation.startDataLog(DataLogManager.getLog());
 
+    RobotThreads.kLogging.newThread(Logger::write, "Logger").start();
+
     CommandScheduler.getInstance().
-      onCommandInitialize(command -> init(command));
+      onCommandInitialize(command -> { init(command); CommandProfiler.start(command); });
     CommandScheduler.getInstance().
-      onCommandInterrupt(command -> end(command, true));
+      onCommandInterrupt(command -> { end(command, true); CommandProfiler.end(command, true); });
     CommandScheduler.getInstance().
-      onCommandFinish(command -> end(command, false));
+      onCommandFinish(command -> { end(command, false); CommandProfiler.end(command, false); });
   }
 
   /**
-   * Formats a message and writes it to the RioLog.
+   * Queues a message to be written to the RioLog, stamped with the current time.
    *
    * @param message contains the text of the message to be logged.
    */
   public static void log(String message) {
-    DataLogManager.log(String.format("[%6.2f] %s\n", Timer.getFPGATimestamp() , message));
+    enqueue(kMessage, message, null, null, false);
   }
 
   /**
@@ -68,20 +115,19 @@ public final class Logger {
    * @param command is the command class that is starting.
    */
   public static void init(Command command) {
-    log("--> Start command: " + command.getClass().getSimpleName());
+    enqueue(kCommandStart, null, command.getClass(), null, false);
   }
 
   /**
-   * Logs the start of a command.
+   * Logs the start of a command. The settings are formatted on the writer thread, so
+   * they must not be changed after this is called.
    *
    * @param command is the command class that is starting.
    *
    * @param settings are the parameters used when starting the command.
    */
   public static void init(Command command, Object... settings) {
-    log("--> Start command: " + command.getClass().getSimpleName() + " (" +
-        Stream.of(settings).map(Object::toString).collect(joining(", ")) +
-        ")");
+    enqueue(kCommandStartWithSettings, null, command.getClass(), settings, false);
   }
 
   /**
@@ -92,7 +138,95 @@ public final class Logger {
    * @param isInterrupted is <b>true</b> if the command was interrupted.
    */
   public static void end(Command command, boolean isInterrupted) {
-    String name = command.getClass().getSimpleName();
-    log("--> " + (isInterrupted ? "Interrupted": "End") + "command: " + name);
+    enqueue(kCommandEnd, null, command.getClass(), null, isInterrupted);
+  }
+
+  /** @return the number of log events dropped because the queue was full. */
+  public static long getDroppedCount() {
+    return m_droppedCount.get();
+  }
+
+  private static void enqueue(int type, String message, Class<?> commandClass, Object[] settings, boolean isInterrupted) {
+    double timestamp = Timer.getFPGATimestamp();
+    long position = m_writeIndex.get();
+    while (true) {
+      long difference = m_sequences.get((int)(position & (kQueueSize - 1))) - position;
+      if (difference == 0) {
+        if (m_writeIndex.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = m_writeIndex.get();
+      } else if (difference < 0) {
+        m_droppedCount.incrementAndGet();
+        return;
+      } else {
+        position = m_writeIndex.get();
+      }
+    }
+
+    int slot = (int)(position & (kQueueSize - 1));
+    Event event = m_events[slot];
+    event.timestamp = timestamp;
+    event.type = type;
+    event.message = message;
+    event.commandClass = commandClass;
+    event.settings = settings;
+    event.isInterrupted = isInterrupted;
+    m_sequences.lazySet(slot, position + 1);
+  }
+
+  /** Formats and writes queued events. Runs on the background writer thread. */
+  private static void write() {
+    long reportedDroppedCount = 0;
+    while (true) {
+      boolean hasWritten = false;
+      while (true) {
+        int slot = (int)(m_readIndex & (kQueueSize - 1));
+        if (m_sequences.get(slot) != m_readIndex + 1) {
+          break;
+        }
+        Event event = m_events[slot];
+        String text = format(event);
+        double timestamp = event.timestamp;
+        event.message = null;
+        event.commandClass = null;
+        event.settings = null;
+        m_sequences.lazySet(slot, m_readIndex + kQueueSize);
+        m_readIndex += 1;
+
+        DataLogManager.log(String.format("[%6.2f] %s\n", timestamp, text));
+        hasWritten = true;
+      }
+
+      long droppedCount = m_droppedCount.get();
+      if (droppedCount != reportedDroppedCount) {
+        DataLogManager.log(String.format("[%6.2f] Logger dropped %d messages\n",
+            Timer.getFPGATimestamp(), droppedCount - reportedDroppedCount));
+        reportedDroppedCount = droppedCount;
+      }
+
+      if (!hasWritten) {
+        try {
+          Thread.sleep(kIdleSleepMilliseconds);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static String format(Event event) {
+    switch (event.type) {
+      case kCommandStart:
+        return "--> Start command: " + m_commandNames.get(event.commandClass);
+      case kCommandStartWithSettings:
+        return "--> Start command: " + m_commandNames.get(event.commandClass) + " (" +
+            Stream.of(event.settings).map(String::valueOf).collect(joining(", ")) +
+            ")";
+      case kCommandEnd:
+        return "--> " + (event.isInterrupted ? "Interrupted": "End") + "command: " + m_commandNames.get(event.commandClass);
+      default:
+        return event.message;
+    }
   }
 }
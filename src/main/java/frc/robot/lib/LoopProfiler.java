@@ -0,0 +1,250 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+
+import frc.robot.Robot;
+
+/**
+ * Times each section of the robot loop (robotPeriodic, the command scheduler and every
+ * subsystem's periodic) with nanosecond timers. Times go into fixed-bucket histograms
+ * with eight buckets per doubling, like an HDR histogram, so recording never allocates
+ * and percentiles stay accurate to about 12% from microseconds to seconds. Summaries of
+ * the times recorded since the last summary are published and written to the data log
+ * once a second, and whenever a loop runs over budget the section that took the most
+ * time in that loop is named in the log.
+ */
+public final class LoopProfiler {
+
+  private static final double kBudgetSeconds = TimedRobot.kDefaultPeriod;
+  private static final double kSummaryPeriod = 1.0;
+  private static final double kOverrunLogPeriod = 1.0; // at most one overrun message per period
+
+  private static final int kSubBucketBits = 3;
+  private static final int kSubBucketCount = 1 << kSubBucketBits;
+  private static final int kBucketCount = kSubBucketCount * 22; // up to ~16 s in microseconds
+
+  /** One timed section of the loop. */
+  public static final class Section {
+    private final String m_name;
+    private final long[] m_histogram = new long[kBucketCount];
+    private final DoubleArrayLogEntry m_logSummary;
+    private final double[] m_summary = new double[5];
+    private long m_count = 0;
+    private long m_totalNanos = 0;
+    private long m_maxNanos = 0;
+    private long m_startNanos = 0;
+    private long m_loopNanos = 0;
+    private long m_loopChildNanos = 0;
+    private Section m_parent = null;
+
+    private Section(String name) {
+      m_name = name;
+      m_logSummary = new DoubleArrayLogEntry(DataLogManager.getLog(), "loop/" + name);
+      Telemetry.addDouble("Loop/" + name + "/Mean", () -> m_summary[0], kSummaryPeriod, 1e-5);
+      Telemetry.addDouble("Loop/" + name + "/P50", () -> m_summary[1], kSummaryPeriod, 1e-5);
+      Telemetry.addDouble("Loop/" + name + "/P99", () -> m_summary[3], kSummaryPeriod, 1e-5);
+      Telemetry.addDouble("Loop/" + name + "/Max", () -> m_summary[4], kSummaryPeriod, 1e-5);
+    }
+
+    /** Starts timing the section. */
+    public void start() {
+      m_parent = m_current;
+      m_current = this;
+      m_startNanos = System.nanoTime();
+    }
+
+    /** Stops timing the section and records the time. */
+    public void stop() {
+      long nanos = System.nanoTime() - m_startNanos;
+      m_current = m_parent;
+      if (m_parent != null) {
+        m_parent.m_loopChildNanos += nanos;
+      }
+      m_loopNanos += nanos;
+      m_totalNanos += nanos;
+      m_count += 1;
+      if (nanos > m_maxNanos) {
+        m_maxNanos = nanos;
+      }
+      m_histogram[getBucket(nanos / 1000)] += 1;
+    }
+
+    /** @return the time spent in the section during the current or last loop, in seconds. */
+    public double getLoopTime() {
+      return m_loopNanos / 1e9;
+    }
+
+    /** @return the name of the section. */
+    public String getName() {
+      return m_name;
+    }
+
+    private long getLoopSelfNanos() {
+      return m_loopNanos - m_loopChildNanos;
+    }
+
+    private void summarize() {
+      if (m_count == 0) {
+        Arrays.fill(m_summary, 0.0); // nothing ran in this window
+        return;
+      }
+      m_summary[0] = m_totalNanos / 1e9 / m_count;
+      m_summary[1] = getPercentile(0.50);
+      m_summary[2] = getPercentile(0.90);
+      m_summary[3] = getPercentile(0.99);
+      m_summary[4] = m_maxNanos / 1e9;
+      m_logSummary.append(m_summary);
+
+      // Start a new window, so each summary covers only the last period.
+      Arrays.fill(m_histogram, 0);
+      m_count = 0;
+      m_totalNanos = 0;
+      m_maxNanos = 0;
+    }
+
+    /** @return the time below which the given fraction of recorded times fall, in seconds. */
+    private double getPercentile(double fraction) {
+      long target = (long)Math.ceil(m_count * fraction);
+      long seen = 0;
+      for (int i = 0; i < kBucketCount; i += 1) {
+        seen += m_histogram[i];
+        if (seen >= target) {
+          return getBucketUpperBound(i) / 1e6;
+        }
+      }
+      return m_maxNanos / 1e9;
+    }
+  }
+
+  private static final List<Section> m_sections = new ArrayList<>();
+  private static final Section m_robotSection;
+  private static Section m_current = null;
+  private static double m_lastLoopTime = 0.0;
+  private static long m_overrunCount = 0;
+  private static long m_collectionOverrunCount = 0;
+  private static long m_loopStartCollectionCount = 0;
+  private static long m_unreportedOverrunCount = 0;
+  private static double m_lastOverrunLogTimestamp = 0.0;
+
+  static {
+    m_robotSection = section("Robot");
+    Telemetry.addDouble("Loop/Overruns", () -> m_overrunCount, kSummaryPeriod);
+    Telemetry.addDouble("Loop/OverrunsDuringGC", () -> m_collectionOverrunCount, kSummaryPeriod);
+    Robot.addCustomPeriodic("LoopProfiler", LoopProfiler::summarize, kSummaryPeriod, PeriodicScheduler.Priority.LOW, 0.002);
+  }
+
+  /**
+   * Creates a timed section. Call once, when the owner is constructed.
+   *
+   * @param name the name used in telemetry and overrun messages.
+   * @return the section.
+   */
+  public static Section section(String name) {
+    Section section = new Section(name);
+    m_sections.add(section);
+    return section;
+  }
+
+  /**
+   * @param name the name of a section.
+   * @return the section with that name, or null if there isn't one.
+   */
+  public static Section getSection(String name) {
+    for (int i = 0; i < m_sections.size(); i += 1) {
+      if (m_sections.get(i).m_name.equals(name)) {
+        return m_sections.get(i);
+      }
+    }
+    return null;
+  }
+
+  /** Marks the start of robotPeriodic. */
+  public static void startLoop() {
+    for (int i = 0; i < m_sections.size(); i += 1) {
+      m_sections.get(i).m_loopNanos = 0;
+      m_sections.get(i).m_loopChildNanos = 0;
+    }
+    m_current = null;
+    m_loopStartCollectionCount = JvmMonitor.getCollectionCount();
+    m_robotSection.start();
+  }
+
+  /** Marks the end of robotPeriodic, and names the slowest section if the loop ran over budget. */
+  public static void endLoop() {
+    m_robotSection.stop();
+    double loopTime = m_robotSection.m_loopNanos / 1e9;
+    m_lastLoopTime = loopTime;
+    if (loopTime <= kBudgetSeconds) { return; }
+
+    // A collection that finished while the loop ran most likely paused it.
+    boolean isDuringCollection = JvmMonitor.getCollectionCount() != m_loopStartCollectionCount;
+    m_overrunCount += 1;
+    if (isDuringCollection) {
+      m_collectionOverrunCount += 1;
+    }
+    m_unreportedOverrunCount += 1;
+    double timestamp = Timer.getFPGATimestamp();
+    if (timestamp - m_lastOverrunLogTimestamp < kOverrunLogPeriod) { return; }
+
+    // Subsystem periodics run inside the scheduler, so offenders are ranked by the time
+    // spent in each section itself, not counting the sections nested inside it.
+    Section topOffender = m_robotSection;
+    for (int i = 0; i < m_sections.size(); i += 1) {
+      Section section = m_sections.get(i);
+      if (section.getLoopSelfNanos() > topOffender.getLoopSelfNanos()) {
+        topOffender = section;
+      }
+    }
+    Logger.log(String.format(
+      "Loop overrun: %.1f ms%s, top offender %s %.1f ms (%d overruns since last report)",
+      loopTime * 1e3,
+      isDuringCollection ? " during GC" : "",
+      topOffender.m_name,
+      topOffender.getLoopSelfNanos() / 1e6,
+      m_unreportedOverrunCount));
+    m_unreportedOverrunCount = 0;
+    m_lastOverrunLogTimestamp = timestamp;
+  }
+
+  /** @return how long the last robotPeriodic took, in seconds. */
+  public static double getLastLoopTime() {
+    return m_lastLoopTime;
+  }
+
+  private static void summarize() {
+    for (int i = 0; i < m_sections.size(); i += 1) {
+      m_sections.get(i).summarize();
+    }
+  }
+
+  private static int getBucket(long micros) {
+    if (micros < kSubBucketCount) {
+      return (int)micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int bucket = (exponent - kSubBucketBits + 1) * kSubBucketCount
+      + (int)((micros >> (exponent - kSubBucketBits)) & (kSubBucketCount - 1));
+    return Math.min(bucket, kBucketCount - 1);
+  }
+
+  private static long getBucketUpperBound(int bucket) {
+    if (bucket < kSubBucketCount) {
+      return bucket + 1;
+    }
+    int exponent = bucket / kSubBucketCount + kSubBucketBits - 1;
+    long subBucket = bucket % kSubBucketCount;
+    return (kSubBucketCount + subBucket + 1) << (exponent - kSubBucketBits);
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Samples the swerve module encoders and the NavX on a dedicated Notifier thread,
+ * independent of the main robot loop. Each sample is written to a fixed-size,
+ * timestamped ring buffer that the drive subsystem drains into its pose estimator.
+ *
+ * The buffer is single-producer (the Notifier) and single-consumer (the main robot
+ * thread), so the read and write indices are the only shared state and no locks are
+ * needed. If the main loop falls far enough behind that the buffer fills up, new
+ * samples are dropped and counted rather than overwriting unread ones.
+ */
+public class OdometrySampler {
+
+  /** Receives each buffered sample as it is drained. */
+  @FunctionalInterface
+  public interface Consumer {
+    /**
+     * @param timestamp FPGA timestamp of the sample, in seconds.
+     * @param yawDegrees NavX yaw at the time of the sample, in degrees.
+     * @param distances module driving distances in meters, in module order.
+     * @param angles module steering angles in radians, in module order.
+     */
+    void accept(double timestamp, double yawDegrees, double[] distances, double[] angles);
+  }
+
+  private final NavX m_gyro;
+  private final SwerveModule[] m_modules;
+  private final Notifier m_notifier;
+
+  private final int m_capacity;
+  private final int m_mask;
+  private final double[] m_timestamps;
+  private final double[] m_yaws;
+  private final double[] m_distances;
+  private final double[] m_angles;
+
+  // Reused by drain() so handing a sample to the consumer never allocates.
+  private final double[] m_drainDistances;
+  private final double[] m_drainAngles;
+
+  private volatile long m_writeIndex = 0;
+  private volatile long m_readIndex = 0;
+
+  private volatile long m_sampleCount = 0;
+  private volatile long m_droppedCount = 0;
+  private volatile double m_maxPeriod = 0.0;
+  private double m_lastSampleTimestamp = 0.0;
+  private boolean m_isPrioritySet = false;
+
+  private long m_rateSampleCount = 0;
+  private double m_rateTimestamp = 0.0;
+  private double m_sampleRate = 0.0;
+  private int m_lastDrainCount = 0;
+
+  /**
+   * @param gyro the NavX to read the heading from.
+   * @param modules the swerve modules to read, in kinematics order.
+   * @param capacity the number of samples the ring buffer can hold; rounded up to a power of two.
+   */
+  public OdometrySampler(NavX gyro, SwerveModule[] modules, int capacity) {
+    m_gyro = gyro;
+    m_modules = modules;
+
+    m_capacity = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    m_mask = m_capacity - 1;
+    m_timestamps = new double[m_capacity];
+    m_yaws = new double[m_capacity];
+    m_distances = new double[m_capacity * modules.length];
+    m_angles = new double[m_capacity * modules.length];
+    m_drainDistances = new double[modules.length];
+    m_drainAngles = new double[modules.length];
+
+    m_notifier = new Notifier(this::sample);
+    m_notifier.setName("OdometrySampler");
+  }
+
+  /**
+   * Starts sampling.
+   *
+   * @param frequency the sampling rate in Hz.
+   */
+  public void start(double frequency) {
+    m_rateTimestamp = Timer.getFPGATimestamp();
+    m_notifier.startPeriodic(1.0 / frequency);
+  }
+
+  /** Stops sampling. Samples already in the buffer can still be drained. */
+  public void stop() {
+    m_notifier.stop();
+  }
+
+  /** Runs on the Notifier thread. */
+  private void sample() {
+    if (!m_isPrioritySet) {
+      Threads.setCurrentThreadPriority(true, RobotThreads.kOdometryPriority);
+      m_isPrioritySet = true;
+    }
+
+    double timestamp = Timer.getFPGATimestamp();
+
+    if (m_lastSampleTimestamp != 0.0) {
+      double period = timestamp - m_lastSampleTimestamp;
+      if (period > m_maxPeriod) {
+        m_maxPeriod = period;
+      }
+    }
+    m_lastSampleTimestamp = timestamp;
+    m_sampleCount += 1;
+
+    long write = m_writeIndex;
+    if (write - m_readIndex >= m_capacity) {
+      m_droppedCount += 1;
+      return;
+    }
+
+    int slot = (int)(write & m_mask);
+    int offset = slot * m_modules.length;
+    m_timestamps[slot] = timestamp;
+    m_yaws[slot] = m_gyro.getYaw();
+    for (int i = 0; i < m_modules.length; i += 1) {
+      m_distances[offset + i] = m_modules[i].getDrivingRelativePosition();
+      m_angles[offset + i] = m_modules[i].getAngleRadians();
+    }
+
+    // Publishing the new write index is what makes the slot visible to the reader.
+    m_writeIndex = write + 1;
+  }
+
+  /**
+   * Hands every sample written since the last call to the consumer, oldest first.
+   * Must only be called from the main robot thread.
+   *
+   * @return the number of samples drained.
+   */
+  public int drain(Consumer consumer) {
+    long read = m_readIndex;
+    long write = m_writeIndex;
+    int count = 0;
+
+    for (; read < write; read += 1) {
+      int slot = (int)(read & m_mask);
+      int offset = slot * m_modules.length;
+      for (int i = 0; i < m_modules.length; i += 1) {
+        m_drainDistances[i] = m_distances[offset + i];
+        m_drainAngles[i] = m_angles[offset + i];
+      }
+      consumer.accept(m_timestamps[slot], m_yaws[slot], m_drainDistances, m_drainAngles);
+      count += 1;
+    }
+
+    m_readIndex = read;
+    m_lastDrainCount = count;
+    updateSampleRate();
+    return count;
+  }
+
+  /**
+   * Copies a drained sample into reused module positions. A position's angle is only
+   * replaced when the module has actually steered, so driving straight does not allocate.
+   *
+   * @param distances module driving distances in meters, in module order.
+   * @param angles module steering angles in radians, in module order.
+   * @param positions receives the sample, one position per module.
+   */
+  public static void copyPositions(double[] distances, double[] angles, SwerveModulePosition[] positions) {
+    for (int i = 0; i < positions.length; i += 1) {
+      positions[i].distanceMeters = distances[i];
+      if (positions[i].angle.getRadians() != angles[i]) {
+        positions[i].angle = new Rotation2d(angles[i]);
+      }
+    }
+  }
+
+  /** Throws away any samples that have not been drained yet. */
+  public void clear() {
+    m_readIndex = m_writeIndex;
+  }
+
+  private void updateSampleRate() {
+    double timestamp = Timer.getFPGATimestamp();
+    double elapsed = timestamp - m_rateTimestamp;
+    if (elapsed >= 1.0) {
+      long sampleCount = m_sampleCount;
+      m_sampleRate = (sampleCount - m_rateSampleCount) / elapsed;
+      m_rateSampleCount = sampleCount;
+      m_rateTimestamp = timestamp;
+    }
+  }
+
+  /** @return the measured sampling rate in Hz, averaged over roughly the last second. */
+  public double getSampleRate() {
+    return m_sampleRate;
+  }
+
+  /** @return the number of samples dropped because the buffer was full. */
+  public long getDroppedCount() {
+    return m_droppedCount;
+  }
+
+  /** @return the longest time between two samples, in seconds. */
+  public double getMaxPeriod() {
+    return m_maxPeriod;
+  }
+
+  /** @return the number of samples handed over by the most recent drain. */
+  public int getLastDrainCount() {
+    return m_lastDrainCount;
+  }
+}
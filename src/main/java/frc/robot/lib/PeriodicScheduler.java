@@ -0,0 +1,159 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+
+/**
+ * Runs the robot's background periodic tasks (telemetry, tunable parameters, profiling
+ * summaries) from a single callback that ticks once per robot loop, half a loop after the
+ * main loop starts. Periods are rounded to whole ticks and each task is given the phase
+ * that puts it in the least loaded ticks, so slow tasks with different periods don't pile
+ * up in the same tick.
+ *
+ * Tasks run in priority order. Once a tick has used its time budget, normal and low
+ * priority tasks wait for the next tick, and low priority tasks also wait while the main
+ * loop is close to overrunning. Each task's run time, skips and budget overruns are
+ * published under Tasks/.
+ */
+public final class PeriodicScheduler {
+
+  private static final int kSlotCount = 150; // phases are balanced over this many ticks
+  private static final double kTickBudget = 0.004;
+  private static final double kNearOverrunFraction = 0.75;
+  private static final double kTelemetryPeriod = 1.0;
+
+  /** Task priorities, from always run to first to be skipped. */
+  public enum Priority {
+    HIGH, NORMAL, LOW
+  }
+
+  private static final class Task {
+    final String name;
+    final Runnable callback;
+    final int periodTicks;
+    final Priority priority;
+    final long budgetNanos;
+    long nextTick;
+    long count = 0;
+    long totalNanos = 0;
+    long maxNanos = 0;
+    long skippedCount = 0;
+    long overBudgetCount = 0;
+
+    Task(String name, Runnable callback, int periodTicks, Priority priority, long budgetNanos) {
+      this.name = name;
+      this.callback = callback;
+      this.periodTicks = periodTicks;
+      this.priority = priority;
+      this.budgetNanos = budgetNanos;
+    }
+  }
+
+  private final double m_tickPeriod;
+  private final List<Task> m_tasks = new ArrayList<>();
+  private final double[] m_slotLoad = new double[kSlotCount];
+  private long m_tick = 0;
+
+  /**
+   * @param tickPeriod how often {@link #run()} is called, in seconds.
+   */
+  public PeriodicScheduler(double tickPeriod) {
+    m_tickPeriod = tickPeriod;
+  }
+
+  /**
+   * Adds a task.
+   *
+   * @param name the name used in telemetry and log messages.
+   * @param callback the task.
+   * @param periodSeconds how often to run the task, rounded to whole ticks.
+   * @param priority the priority of the task.
+   * @param budgetSeconds how long the task is expected to take; longer runs are counted and logged.
+   */
+  public void add(String name, Runnable callback, double periodSeconds, Priority priority, double budgetSeconds) {
+    int periodTicks = (int)Math.max(1, Math.round(periodSeconds / m_tickPeriod));
+    Task task = new Task(name, callback, periodTicks, priority, (long)(budgetSeconds * 1e9));
+    task.nextTick = m_tick + choosePhase(periodTicks, budgetSeconds);
+
+    // Keep the list in priority order so higher priority tasks run first in a tick.
+    int index = m_tasks.size();
+    while (index > 0 && m_tasks.get(index - 1).priority.compareTo(priority) > 0) {
+      index -= 1;
+    }
+    m_tasks.add(index, task);
+
+    String key = "Tasks/" + name + "/";
+    Telemetry.addDouble(key + "MeanTime", () -> task.count > 0 ? task.totalNanos / 1e9 / task.count : 0.0, kTelemetryPeriod, 1e-5);
+    Telemetry.addDouble(key + "MaxTime", () -> task.maxNanos / 1e9, kTelemetryPeriod);
+    Telemetry.addDouble(key + "Skipped", () -> task.skippedCount, kTelemetryPeriod);
+    Telemetry.addDouble(key + "OverBudget", () -> task.overBudgetCount, kTelemetryPeriod);
+  }
+
+  /** Runs the tasks that are due. Call once per tick from the main robot thread. */
+  public void run() {
+    long tickStart = System.nanoTime();
+    long tickBudgetNanos = (long)(kTickBudget * 1e9);
+    boolean isNearOverrun = LoopProfiler.getLastLoopTime() > kNearOverrunFraction * TimedRobot.kDefaultPeriod;
+
+    for (int i = 0; i < m_tasks.size(); i += 1) {
+      Task task = m_tasks.get(i);
+      if (m_tick < task.nextTick) { continue; }
+
+      if (task.priority != Priority.HIGH) {
+        boolean isTickBudgetUsed = System.nanoTime() - tickStart > tickBudgetNanos;
+        if (isTickBudgetUsed || (task.priority == Priority.LOW && isNearOverrun)) {
+          task.skippedCount += 1; // still due, so it runs in the next tick with room
+          continue;
+        }
+      }
+
+      long start = System.nanoTime();
+      task.callback.run();
+      long nanos = System.nanoTime() - start;
+
+      task.count += 1;
+      task.totalNanos += nanos;
+      if (nanos > task.maxNanos) {
+        task.maxNanos = nanos;
+      }
+      if (nanos > task.budgetNanos) {
+        task.overBudgetCount += 1;
+        if (task.overBudgetCount == 1) {
+          Logger.log(String.format("Periodic task %s took %.1f ms, over its %.1f ms budget",
+            task.name, nanos / 1e6, task.budgetNanos / 1e6));
+        }
+      }
+      while (task.nextTick <= m_tick) {
+        task.nextTick += task.periodTicks;
+      }
+    }
+    m_tick += 1;
+  }
+
+  /** @return the phase, in ticks from now, whose ticks are the least loaded. */
+  private int choosePhase(int periodTicks, double load) {
+    int bestPhase = 0;
+    double bestLoad = Double.MAX_VALUE;
+    for (int phase = 0; phase < Math.min(periodTicks, kSlotCount); phase += 1) {
+      double maxLoad = 0.0;
+      for (int offset = phase; offset < kSlotCount; offset += periodTicks) {
+        maxLoad = Math.max(maxLoad, m_slotLoad[(int)((m_tick + offset) % kSlotCount)]);
+      }
+      if (maxLoad < bestLoad) {
+        bestLoad = maxLoad;
+        bestPhase = phase;
+      }
+    }
+    for (int offset = bestPhase; offset < kSlotCount; offset += periodTicks) {
+      m_slotLoad[(int)((m_tick + offset) % kSlotCount)] += load;
+    }
+    return bestPhase;
+  }
+}
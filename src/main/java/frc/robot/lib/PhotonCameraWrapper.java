@@ -15,33 +15,164 @@ import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 
- public class PhotonCameraWrapper {
-     public PhotonCamera photonCamera;
-     public PhotonPoseEstimator photonPoseEstimator;
- 
-     public PhotonCameraWrapper(
-        String cameraName, 
-        Transform3d robotToCamera,
-        PoseStrategy poseStrategy,
-        AprilTagFieldLayout aprilTagFieldLayout
-    ) {  
-        photonPoseEstimator = new PhotonPoseEstimator(
-            aprilTagFieldLayout,
-            poseStrategy, 
-            new PhotonCamera(cameraName), 
-            robotToCamera
-        ); 
-        photonPoseEstimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
-     }
- 
-     /**
-      * @param estimatedRobotPose The current best guess at robot pose
-      * @return A pair of the fused camera observations to a single Pose2d on the field, and the time
-      *     of the observation. Assumes a planar field and the robot is always firmly on the ground
-      */
-     public Optional<EstimatedRobotPose> getEstimatedGlobalPose(Pose2d prevEstimatedRobotPose) {
-         photonPoseEstimator.setReferencePose(prevEstimatedRobotPose);
-         return photonPoseEstimator.update();
-     }
- }
\ No newline at end of file
+import frc.robot.Constants;
+
+/**
+ * Runs pose estimation for one PhotonVision camera on its own background thread, so the
+ * solvePnP work never happens inside the main robot loop. Estimated poses are handed to
+ * the main thread through a bounded lock-free queue, along with standard deviations
+ * describing how far each one can be trusted. An estimator is built up front for each
+ * alliance's field layout so switching alliances never constructs anything.
+ */
+public class PhotonCameraWrapper {
+  private final String m_name;
+  private final PhotonPoseEstimator m_bluePoseEstimator;
+  private final PhotonPoseEstimator m_redPoseEstimator;
+  private final RingBuffer<VisionMeasurement> m_results;
+
+  private volatile PhotonPoseEstimator m_photonPoseEstimator = null;
+  private volatile Pose2d m_referencePose = null;
+  private double m_lastResultTimestamp = -1.0;
+
+  private volatile double m_processingTime = 0.0;
+  private volatile double m_maxProcessingTime = 0.0;
+
+  public PhotonCameraWrapper(
+    String cameraName,
+    Transform3d robotToCamera,
+    PoseStrategy poseStrategy,
+    AprilTagFieldLayout blueAprilTagFieldLayout,
+    AprilTagFieldLayout redAprilTagFieldLayout
+  ) {
+    m_name = cameraName;
+    PhotonCamera camera = new PhotonCamera(cameraName);
+    m_bluePoseEstimator = createPoseEstimator(camera, robotToCamera, poseStrategy, blueAprilTagFieldLayout);
+    m_redPoseEstimator = createPoseEstimator(camera, robotToCamera, poseStrategy, redAprilTagFieldLayout);
+
+    m_results = new RingBuffer<>(Constants.Vision.kResultQueueSize);
+
+    RobotThreads.kVision.newThread(this::run, "Vision-" + cameraName).start();
+  }
+
+  private static PhotonPoseEstimator createPoseEstimator(
+    PhotonCamera camera,
+    Transform3d robotToCamera,
+    PoseStrategy poseStrategy,
+    AprilTagFieldLayout aprilTagFieldLayout
+  ) {
+    PhotonPoseEstimator photonPoseEstimator = new PhotonPoseEstimator(
+      aprilTagFieldLayout,
+      poseStrategy,
+      camera,
+      robotToCamera
+    );
+    photonPoseEstimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
+    return photonPoseEstimator;
+  }
+
+  /**
+   * Chooses the field layout used for pose estimation. Until an alliance is set the
+   * camera is polled but no poses are estimated.
+   *
+   * @param alliance the alliance the robot is on.
+   */
+  public void setAlliance(Alliance alliance) {
+    switch (alliance) {
+      case Blue:
+        m_photonPoseEstimator = m_bluePoseEstimator;
+        break;
+      case Red:
+        m_photonPoseEstimator = m_redPoseEstimator;
+        break;
+      default:
+        m_photonPoseEstimator = null;
+        break;
+    }
+  }
+
+  /**
+   * Polls the camera for as long as the robot program runs. Runs on the background
+   * thread, which is a daemon so it never holds up shutdown.
+   */
+  private void run() {
+    while (true) {
+      long start = System.nanoTime();
+
+      PhotonPoseEstimator photonPoseEstimator = m_photonPoseEstimator;
+      Optional<EstimatedRobotPose> result = Optional.empty();
+      if (photonPoseEstimator != null) {
+        Pose2d referencePose = m_referencePose;
+        if (referencePose != null) {
+          photonPoseEstimator.setReferencePose(referencePose);
+        }
+        result = photonPoseEstimator.update();
+      }
+
+      if (result.isPresent() && result.get().timestampSeconds != m_lastResultTimestamp) {
+        m_lastResultTimestamp = result.get().timestampSeconds;
+        m_results.offer(new VisionMeasurement(m_name, result.get()));
+
+        double processingTime = (System.nanoTime() - start) / 1e9;
+        m_processingTime = processingTime;
+        if (processingTime > m_maxProcessingTime) {
+          m_maxProcessingTime = processingTime;
+        }
+      }
+
+      try {
+        Thread.sleep(Constants.Vision.kPollPeriodMilliseconds);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gives the estimator the current best guess at the robot pose, used by strategies
+   * that pick the camera solution closest to it.
+   *
+   * @param referencePose the latest estimated robot pose.
+   */
+  public void setReferencePose(Pose2d referencePose) {
+    m_referencePose = referencePose;
+  }
+
+  /**
+   * Takes the oldest estimated pose that has not been read yet. Must only be called from
+   * the main robot thread.
+   *
+   * @return the fused camera observation as a pose on the field, the time of the
+   *     observation and its standard deviations, or null if there is nothing new. Assumes
+   *     a planar field and the robot is always firmly on the ground.
+   */
+  public VisionMeasurement poll() {
+    return m_results.poll();
+  }
+
+  /** @return the camera name. */
+  public String getName() {
+    return m_name;
+  }
+
+  /** @return the time taken to compute the latest estimated pose, in seconds. */
+  public double getProcessingTime() {
+    return m_processingTime;
+  }
+
+  /** @return the longest time taken to compute an estimated pose, in seconds. */
+  public double getMaxProcessingTime() {
+    return m_maxProcessingTime;
+  }
+
+  /** @return the number of estimated poses waiting to be read. */
+  public int getQueueDepth() {
+    return m_results.size();
+  }
+
+  /** @return the number of estimated poses dropped because the main thread fell behind. */
+  public long getDroppedCount() {
+    return m_results.getDroppedCount();
+  }
+}
@@ -0,0 +1,137 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A fixed-capacity history of robot poses keyed by FPGA timestamp, stored in primitive
+ * arrays so that recording and looking up poses never allocates. Lookups between two
+ * recorded poses are linearly interpolated. Poses must be added in timestamp order.
+ */
+public class PoseHistory {
+  private final int m_capacity;
+  private final double[] m_timestamps;
+  private final double[] m_x;
+  private final double[] m_y;
+  private final double[] m_theta;
+
+  private int m_head = 0; // index of the oldest pose
+  private int m_size = 0;
+
+  /**
+   * @param capacity the number of poses to keep.
+   */
+  public PoseHistory(int capacity) {
+    m_capacity = capacity;
+    m_timestamps = new double[capacity];
+    m_x = new double[capacity];
+    m_y = new double[capacity];
+    m_theta = new double[capacity];
+  }
+
+  /**
+   * Records a pose, replacing the oldest one once the history is full. Poses older than
+   * the latest recorded pose are ignored.
+   *
+   * @param timestamp FPGA timestamp of the pose, in seconds.
+   * @param x x position in meters.
+   * @param y y position in meters.
+   * @param theta heading in radians.
+   */
+  public void add(double timestamp, double x, double y, double theta) {
+    if (m_size > 0 && timestamp < getLatestTimestamp()) {
+      return;
+    }
+
+    int index;
+    if (m_size < m_capacity) {
+      index = (m_head + m_size) % m_capacity;
+      m_size += 1;
+    } else {
+      index = m_head;
+      m_head = (m_head + 1) % m_capacity;
+    }
+
+    m_timestamps[index] = timestamp;
+    m_x[index] = x;
+    m_y[index] = y;
+    m_theta[index] = theta;
+  }
+
+  /** Forgets every recorded pose. */
+  public void clear() {
+    m_head = 0;
+    m_size = 0;
+  }
+
+  /** @return the number of recorded poses. */
+  public int size() {
+    return m_size;
+  }
+
+  /** @return the timestamp of the oldest recorded pose, or NaN if there is none. */
+  public double getOldestTimestamp() {
+    return m_size == 0 ? Double.NaN : m_timestamps[m_head];
+  }
+
+  /** @return the timestamp of the latest recorded pose, or NaN if there is none. */
+  public double getLatestTimestamp() {
+    return m_size == 0 ? Double.NaN : m_timestamps[(m_head + m_size - 1) % m_capacity];
+  }
+
+  /**
+   * Looks up the pose at a point in time, interpolating between the recorded poses on
+   * either side of it. Timestamps outside the recorded range are clamped to the oldest
+   * or latest pose.
+   *
+   * @param timestamp FPGA timestamp to look up, in seconds.
+   * @param pose receives x (meters), y (meters) and heading (radians); at least 3 long.
+   * @return true if a pose was found, false if the history is empty.
+   */
+  public boolean sample(double timestamp, double[] pose) {
+    if (m_size == 0) {
+      return false;
+    }
+
+    // Binary search for the first recorded pose at or after the timestamp.
+    int low = 0;
+    int high = m_size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (m_timestamps[(m_head + mid) % m_capacity] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    if (low == 0) {
+      copy(m_head, pose);
+      return true;
+    }
+    if (low == m_size) {
+      copy((m_head + m_size - 1) % m_capacity, pose);
+      return true;
+    }
+
+    int before = (m_head + low - 1) % m_capacity;
+    int after = (m_head + low) % m_capacity;
+    double span = m_timestamps[after] - m_timestamps[before];
+    double t = span > 0.0 ? (timestamp - m_timestamps[before]) / span : 1.0;
+
+    pose[0] = m_x[before] + (m_x[after] - m_x[before]) * t;
+    pose[1] = m_y[before] + (m_y[after] - m_y[before]) * t;
+    pose[2] = MathUtil.angleModulus(m_theta[before] + MathUtil.angleModulus(m_theta[after] - m_theta[before]) * t);
+    return true;
+  }
+
+  private void copy(int index, double[] pose) {
+    pose[0] = m_x[index];
+    pose[1] = m_y[index];
+    pose[2] = m_theta[index];
+  }
+}
@@ -0,0 +1,41 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+/**
+ * A joystick response curve that blends a linear and a cubic response, giving finer
+ * control near the center of the stick while still reaching full output at the edge.
+ * The curve is computed once into a lookup table and evaluated by interpolating it.
+ */
+public class ResponseCurve {
+  private final double[] m_table;
+
+  /**
+   * @param expo how much of the cubic response to use, from 0 (linear) to 1 (cubic).
+   * @param size the number of lookup table entries between 0 and 1.
+   */
+  public ResponseCurve(double expo, int size) {
+    m_table = new double[size + 1];
+    for (int i = 0; i <= size; i += 1) {
+      double x = (double)i / size;
+      m_table[i] = (1.0 - expo) * x + expo * x * x * x;
+    }
+  }
+
+  /**
+   * @param input the stick input, from -1 to 1.
+   * @return the shaped output, from -1 to 1, with the same sign as the input.
+   */
+  public double apply(double input) {
+    double position = Math.min(Math.abs(input), 1.0) * (m_table.length - 1);
+    int index = (int)position;
+    if (index >= m_table.length - 1) {
+      return Math.copySign(m_table[m_table.length - 1], input);
+    }
+    double fraction = position - index;
+    return Math.copySign(m_table[index] + (m_table[index + 1] - m_table[index]) * fraction, input);
+  }
+}
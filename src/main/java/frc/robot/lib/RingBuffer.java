@@ -0,0 +1,73 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+/**
+ * A bounded, lock-free queue for handing objects from one producer thread to one
+ * consumer thread. When the queue is full new items are rejected and counted instead
+ * of blocking the producer.
+ */
+public class RingBuffer<T> {
+  private final Object[] m_items;
+  private final int m_mask;
+
+  private volatile long m_readIndex = 0;
+  private volatile long m_writeIndex = 0;
+  private volatile long m_droppedCount = 0;
+
+  /**
+   * @param capacity the maximum number of queued items; rounded up to a power of two.
+   */
+  public RingBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    m_items = new Object[size];
+    m_mask = size - 1;
+  }
+
+  /**
+   * Adds an item. Must only be called from the producer thread.
+   *
+   * @return false if the queue was full and the item was dropped.
+   */
+  public boolean offer(T item) {
+    long write = m_writeIndex;
+    if (write - m_readIndex >= m_items.length) {
+      m_droppedCount += 1;
+      return false;
+    }
+    m_items[(int)(write & m_mask)] = item;
+    m_writeIndex = write + 1;
+    return true;
+  }
+
+  /**
+   * Removes the oldest item. Must only be called from the consumer thread.
+   *
+   * @return the item, or null if the queue is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long read = m_readIndex;
+    if (read >= m_writeIndex) {
+      return null;
+    }
+    int slot = (int)(read & m_mask);
+    T item = (T)m_items[slot];
+    m_items[slot] = null;
+    m_readIndex = read + 1;
+    return item;
+  }
+
+  /** @return the number of items waiting to be read. */
+  public int size() {
+    return (int)(m_writeIndex - m_readIndex);
+  }
+
+  /** @return the number of items dropped because the queue was full. */
+  public long getDroppedCount() {
+    return m_droppedCount;
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+
+import frc.robot.Robot;
+
+/**
+ * The thread policy for the robot process. The main robot thread runs at real-time
+ * priority, the odometry sampler runs just above it, and background workers (vision,
+ * logging) are created through the shared factories here, which name them
+ * and make sure they run at normal, non real-time priority even when they are started
+ * from a real-time thread. Per-thread CPU use is published under Threads/ and written
+ * to the log when {@link #logReport()} is called.
+ */
+public final class RobotThreads implements ThreadFactory {
+
+  /** Real-time priority of the main robot thread. */
+  public static final int kMainPriority = 15;
+
+  /** Real-time priority of the odometry sampler, above the main thread so samples stay evenly spaced. */
+  public static final int kOdometryPriority = 20;
+
+  private static final double kReportPeriod = 5.0;
+
+  public static final RobotThreads kVision = new RobotThreads("Vision", Thread.NORM_PRIORITY - 1);
+  public static final RobotThreads kLogging = new RobotThreads("Logging", Thread.MIN_PRIORITY);
+
+  /** The CPU time of a live thread at the last update, and where its CPU use is published. */
+  private static final class ThreadCpu {
+    final DoublePublisher publisher;
+    long lastCpuTime;
+    long lastSeenUpdate;
+
+    ThreadCpu(DoublePublisher publisher, long cpuTime) {
+      this.publisher = publisher;
+      this.lastCpuTime = cpuTime;
+    }
+  }
+
+  private static final ThreadMXBean m_threadBean = ManagementFactory.getThreadMXBean();
+  private static final NetworkTable m_table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+  private static final Map<Long, ThreadCpu> m_threadCpu = new HashMap<>();
+  private static long m_updateCount = 0;
+  private static double m_lastReportTimestamp = 0.0;
+
+  private final String m_prefix;
+  private final int m_priority;
+  private final AtomicInteger m_count = new AtomicInteger();
+
+  private RobotThreads(String prefix, int priority) {
+    m_prefix = prefix;
+    m_priority = priority;
+  }
+
+  /**
+   * Creates a daemon thread named after this factory and numbered.
+   *
+   * @param runnable the work the thread does.
+   * @return the thread, not yet started.
+   */
+  @Override
+  public Thread newThread(Runnable runnable) {
+    return newThread(runnable, m_prefix + "-" + m_count.incrementAndGet());
+  }
+
+  /**
+   * Creates a daemon thread with the given name.
+   *
+   * @param runnable the work the thread does.
+   * @param name the name of the thread.
+   * @return the thread, not yet started.
+   */
+  public Thread newThread(Runnable runnable, String name) {
+    Thread thread = new Thread(() -> {
+      // Threads inherit the scheduling policy of the thread that starts them, so drop out of real-time first.
+      Threads.setCurrentThreadPriority(false, 0);
+      runnable.run();
+    }, name);
+    thread.setDaemon(true);
+    thread.setPriority(m_priority);
+    return thread;
+  }
+
+  /**
+   * Raises the calling thread, which must be the main robot thread, to real-time priority
+   * and starts publishing per-thread CPU use. Call at the end of robotInit, so threads
+   * started by libraries while the robot is constructed don't inherit real-time priority.
+   */
+  public static void start() {
+    if (!Threads.setCurrentThreadPriority(true, kMainPriority)) {
+      Logger.log("Could not raise the main robot thread to real-time priority");
+    }
+
+    if (m_threadBean.isThreadCpuTimeSupported()) {
+      m_threadBean.setThreadCpuTimeEnabled(true);
+      m_lastReportTimestamp = Timer.getFPGATimestamp();
+      Robot.addCustomPeriodic("RobotThreads", RobotThreads::updateCpuUse, kReportPeriod);
+    }
+  }
+
+  /** Writes every live thread with its priority, state and total CPU time to the log. */
+  public static void logReport() {
+    Logger.log("Threads (name, priority, state, CPU s):");
+    for (ThreadInfo info : m_threadBean.getThreadInfo(m_threadBean.getAllThreadIds())) {
+      if (info == null) { continue; }
+      long cpuTime = m_threadBean.isThreadCpuTimeEnabled() ? m_threadBean.getThreadCpuTime(info.getThreadId()) : -1;
+      Logger.log(String.format("  %s: %d, %s, %.2f",
+        info.getThreadName(),
+        info.getPriority(),
+        info.getThreadState(),
+        cpuTime / 1e9));
+    }
+  }
+
+  /**
+   * Publishes the share of one CPU each thread used since the last update. A publisher is
+   * created once per thread, the first time it is seen, and closed when the thread exits.
+   */
+  private static void updateCpuUse() {
+    double timestamp = Timer.getFPGATimestamp();
+    double elapsed = timestamp - m_lastReportTimestamp;
+    m_lastReportTimestamp = timestamp;
+    m_updateCount += 1;
+
+    for (ThreadInfo info : m_threadBean.getThreadInfo(m_threadBean.getAllThreadIds())) {
+      if (info == null) { continue; }
+      long cpuTime = m_threadBean.getThreadCpuTime(info.getThreadId());
+      if (cpuTime < 0) { continue; }
+      ThreadCpu thread = m_threadCpu.get(info.getThreadId());
+      if (thread == null) {
+        DoublePublisher publisher = m_table.getDoubleTopic("Threads/" + info.getThreadName() + "/CPU").publish();
+        thread = new ThreadCpu(publisher, cpuTime);
+        m_threadCpu.put(info.getThreadId(), thread);
+      } else if (elapsed > 0) {
+        thread.publisher.set((cpuTime - thread.lastCpuTime) / 1e9 / elapsed);
+        thread.lastCpuTime = cpuTime;
+      }
+      thread.lastSeenUpdate = m_updateCount;
+    }
+
+    // Forget threads that have exited, so their IDs and publishers don't pile up.
+    Iterator<ThreadCpu> iterator = m_threadCpu.values().iterator();
+    while (iterator.hasNext()) {
+      ThreadCpu thread = iterator.next();
+      if (thread.lastSeenUpdate != m_updateCount) {
+        thread.publisher.close();
+        iterator.remove();
+      }
+    }
+  }
+}
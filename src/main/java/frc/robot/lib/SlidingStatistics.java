@@ -0,0 +1,84 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+/**
+ * The running mean and variance of the most recent samples of a signal, kept with
+ * Welford's algorithm so they are updated in constant time and without allocating as
+ * each sample replaces the oldest one.
+ */
+public class SlidingStatistics {
+  private final double[] m_samples;
+  private int m_index = 0;
+  private int m_count = 0;
+  private double m_mean = 0.0;
+  private double m_m2 = 0.0; // sum of squared differences from the mean
+
+  /**
+   * @param windowSize the number of samples the statistics are computed over.
+   */
+  public SlidingStatistics(int windowSize) {
+    m_samples = new double[windowSize];
+  }
+
+  /**
+   * Adds a sample, replacing the oldest one once the window is full.
+   *
+   * @param value the sample.
+   */
+  public void add(double value) {
+    if (m_count < m_samples.length) {
+      m_count += 1;
+      double delta = value - m_mean;
+      m_mean += delta / m_count;
+      m_m2 += delta * (value - m_mean);
+    } else {
+      double oldest = m_samples[m_index];
+      double oldMean = m_mean;
+      m_mean += (value - oldest) / m_count;
+      m_m2 += (value - oldest) * (value - m_mean + oldest - oldMean);
+      // Rounding can leave a tiny negative sum when every sample is the same.
+      if (m_m2 < 0.0) {
+        m_m2 = 0.0;
+      }
+    }
+    m_samples[m_index] = value;
+    m_index = (m_index + 1) % m_samples.length;
+  }
+
+  /** Forgets every sample. */
+  public void clear() {
+    m_index = 0;
+    m_count = 0;
+    m_mean = 0.0;
+    m_m2 = 0.0;
+  }
+
+  /** @return true once the window has been filled. */
+  public boolean isFull() {
+    return m_count == m_samples.length;
+  }
+
+  /** @return the number of samples in the window. */
+  public int getCount() {
+    return m_count;
+  }
+
+  /** @return the mean of the samples in the window. */
+  public double getMean() {
+    return m_mean;
+  }
+
+  /** @return the sample variance of the samples in the window. */
+  public double getVariance() {
+    return m_count > 1 ? m_m2 / (m_count - 1) : 0.0;
+  }
+
+  /** @return the sample standard deviation of the samples in the window. */
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+}
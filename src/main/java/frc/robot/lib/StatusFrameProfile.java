@@ -0,0 +1,75 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+
+/**
+ * The periods, in milliseconds, at which a SPARK MAX streams each of its periodic
+ * status frames. Frames carrying data we never read can be slowed right down to free
+ * CAN bandwidth for the ones we do.
+ *
+ * <ul>
+ * <li>Status 0: applied output, faults, follower data</li>
+ * <li>Status 1: velocity, temperature, bus voltage, output current</li>
+ * <li>Status 2: motor position</li>
+ * <li>Status 3: analog sensor voltage, velocity and position</li>
+ * <li>Status 4: alternate encoder velocity and position</li>
+ * <li>Status 5: duty cycle absolute encoder position</li>
+ * <li>Status 6: duty cycle absolute encoder velocity</li>
+ * </ul>
+ */
+public class StatusFrameProfile {
+  /** The periods the SPARK MAX uses when nothing is configured. */
+  public static final StatusFrameProfile kDefault = new StatusFrameProfile(10, 20, 20, 50, 20, 200, 200);
+
+  /** Approximate size of one status frame on the wire: 8 data bytes, extended ID, overhead and bit stuffing. */
+  private static final double kBitsPerFrame = 150.0;
+
+  /** The CAN bus bit rate. */
+  private static final double kBusBitsPerSecond = 1000000.0;
+
+  private final int[] m_periods;
+
+  public StatusFrameProfile(int status0, int status1, int status2, int status3, int status4, int status5, int status6) {
+    m_periods = new int[] { status0, status1, status2, status3, status4, status5, status6 };
+  }
+
+  /**
+   * Configures the status frame periods of a SPARK MAX.
+   *
+   * @param sparkMax the controller to configure.
+   */
+  public void apply(CANSparkMax sparkMax) {
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus0, m_periods[0]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus1, m_periods[1]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, m_periods[2]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus3, m_periods[3]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus4, m_periods[4]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus5, m_periods[5]);
+    sparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus6, m_periods[6]);
+  }
+
+  /** @return the number of status frames per second a controller with this profile sends. */
+  public double getFramesPerSecond() {
+    double framesPerSecond = 0.0;
+    for (int period : m_periods) {
+      framesPerSecond += 1000.0 / period;
+    }
+    return framesPerSecond;
+  }
+
+  /**
+   * Estimates the fraction of the CAN bus a number of status frames uses.
+   *
+   * @param framesPerSecond the total status frames per second.
+   * @return the estimated bus utilization, from 0 to 1.
+   */
+  public static double estimateBusUtilization(double framesPerSecond) {
+    return framesPerSecond * kBitsPerFrame / kBusBitsPerSecond;
+  }
+}
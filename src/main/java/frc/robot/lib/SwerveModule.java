@@ -13,6 +13,7 @@ import com.revrobotics.SparkMaxAnalogSensor;
 import com.revrobotics.SparkMaxAnalogSensor.Mode;
 import com.revrobotics.SparkMaxPIDController;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -21,7 +22,8 @@ import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj.DataLogManager;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.RobotState;
+import edu.wpi.first.wpilibj.Timer;
 import frc.robot.Constants;
 
 public class SwerveModule implements Sendable {
@@ -33,10 +35,15 @@ public class SwerveModule implements Sendable {
     RearRight
   }
 
+  private static final TunableParameter m_drivingP =
+    new TunableParameter("Drive/Swerve/Driving/P", Constants.SwerveModule.kDrivingP);
+  private static final TunableParameter m_drivingD =
+    new TunableParameter("Drive/Swerve/Driving/D", Constants.SwerveModule.kDrivingD);
+
   private final Location m_location;
 
-  private final CANSparkMax m_drivingSparkMax;
-  private final CANSparkMax m_turningSparkMax;
+  private final CachedSparkMax m_drivingSparkMax;
+  private final CachedSparkMax m_turningSparkMax;
 
   private final RelativeEncoder m_drivingEncoder;
   private final RelativeEncoder m_turningEncoder;
@@ -45,20 +52,26 @@ public class SwerveModule implements Sendable {
   private final SparkMaxPIDController m_drivingPIDController;
   private final SparkMaxPIDController m_turningPIDController;
 
-  private double[] m_samples = new double[50];
-  private int m_index = 0;
-  private double m_sum = 0.0;
-  private boolean m_valid = false;
+  private final SlidingStatistics m_absoluteEncoder =
+    new SlidingStatistics(Constants.SwerveModule.kAbsoluteEncoderWindowSize);
+  private double m_lastSampleTimestamp = 0.0;
+  private final SlidingStatistics m_steeringDrift =
+    new SlidingStatistics(Constants.SwerveModule.kSteeringDriftWindowSize);
+  private int m_steeringCorrectionCount = 0;
+  private double m_lastSummaryTimestamp = 0.0;
 
   private double m_chassisAngularOffset = 0;
   private double m_resetOffset = 0;
-  private SwerveModuleState m_desiredState = new SwerveModuleState(0.0, new Rotation2d());
+  private int m_drivingPVersion = 0;
+  private int m_drivingDVersion = 0;
 
+  private double m_desiredSpeed = 0.0;
+  private double m_desiredAngle = 0.0;
 
-  private final DoubleLogEntry m_logAbsoluteEncoderPosition;
   private final DoubleLogEntry m_logRelativeEncoderPosition;
-  private final DoubleLogEntry m_logAbsoluteEncoderAverage;
-
+  private final DoubleLogEntry m_logAbsoluteEncoderMean;
+  private final DoubleLogEntry m_logAbsoluteEncoderStdDev;
+  private final DoubleLogEntry m_logSteeringCorrection;
 
   /**
    * Constructs a MAXSwerveModule and configures the driving and turning motor,
@@ -69,8 +82,8 @@ public class SwerveModule implements Sendable {
   public SwerveModule(Location location, int drivingCANId, int turningCANId, double chassisAngularOffset) {
     m_location = location;
 
-    m_drivingSparkMax = new CANSparkMax(drivingCANId, MotorType.kBrushless);
-    m_turningSparkMax = new CANSparkMax(turningCANId, MotorType.kBrushless);
+    m_drivingSparkMax = new CachedSparkMax("Drive/" + m_location.toString() + "/Driving", drivingCANId, MotorType.kBrushless, Constants.CAN.kDriveStatusFrames);
+    m_turningSparkMax = new CachedSparkMax("Drive/" + m_location.toString() + "/Turning", turningCANId, MotorType.kBrushless, Constants.CAN.kSteerStatusFrames);
 
     // Factory reset, so we get the SPARKS MAX to a known state before configuring
     // them. This is useful in case a SPARK MAX is swapped out.
@@ -150,8 +163,12 @@ public class SwerveModule implements Sendable {
     m_drivingSparkMax.setSmartCurrentLimit(Constants.SwerveModule.kDrivingMotorCurrentLimit);
     m_turningSparkMax.setSmartCurrentLimit(Constants.SwerveModule.kTurningMotorCurrentLimit);
 
+    m_drivingSparkMax.applyStatusFrames();
+    m_turningSparkMax.applyStatusFrames();
+
     // Save the SPARK MAX configurations. If a SPARK MAX browns out during
-    // operation, it will maintain the above configurations.
+    // operation, it will maintain the above configurations, except for the
+    // status frame periods, which CachedSparkMax applies again after a reset.
     m_drivingSparkMax.burnFlash();
     m_turningSparkMax.burnFlash();
 
@@ -160,31 +177,104 @@ public class SwerveModule implements Sendable {
     m_resetOffset = chassisAngularOffset;
 
     DataLog log = DataLogManager.getLog();
-    m_logAbsoluteEncoderPosition = new DoubleLogEntry(log, "drive/" + m_location.toString() + "/AbsoluteEncoderPosition");
     m_logRelativeEncoderPosition = new DoubleLogEntry(log, "drive/"+ m_location.toString() + "/RelativeEncoderPosition");
-    m_logAbsoluteEncoderAverage = new DoubleLogEntry(log, "drive/" + m_location.toString() + "/AbsoluteEncoderAverage");
+    m_logAbsoluteEncoderMean = new DoubleLogEntry(log, "drive/" + m_location.toString() + "/AbsoluteEncoderMean");
+    m_logAbsoluteEncoderStdDev = new DoubleLogEntry(log, "drive/" + m_location.toString() + "/AbsoluteEncoderStdDev");
+    m_logSteeringCorrection = new DoubleLogEntry(log, "drive/" + m_location.toString() + "/SteeringCorrection");
+  }
+
+  /**
+   * Samples the absolute encoder into a sliding window while the robot is disabled or the
+   * module is idle, at most once per sample period. Any motion clears the window, since
+   * samples from before the module moved say nothing about where it is now. A summary of
+   * the window is logged once per summary period rather than every sample.
+   */
+  public void sample() {
+    double timestamp = Timer.getFPGATimestamp();
+    if (!RobotState.isDisabled() && !isIdle()) {
+      m_absoluteEncoder.clear();
+    } else if (timestamp - m_lastSampleTimestamp >= Constants.SwerveModule.kAbsoluteEncoderSamplePeriod) {
+      m_lastSampleTimestamp = timestamp;
+      m_absoluteEncoder.add(m_turningAnalogSensor.getPosition());
+    }
+
+    if (Constants.SwerveModule.kSteeringResyncEnabled && !RobotState.isDisabled()) {
+      resyncTurningEncoder();
+    }
+
+    if (timestamp - m_lastSummaryTimestamp >= Constants.SwerveModule.kAbsoluteEncoderSummaryPeriod) {
+      m_lastSummaryTimestamp = timestamp;
+      m_logRelativeEncoderPosition.append(m_turningEncoder.getPosition());
+      if (m_absoluteEncoder.getCount() > 0) {
+        m_logAbsoluteEncoderMean.append(m_absoluteEncoder.getMean());
+        m_logAbsoluteEncoderStdDev.append(m_absoluteEncoder.getStandardDeviation());
+      }
+    }
   }
 
-  public void sample(){
-    m_logRelativeEncoderPosition.append(m_turningEncoder.getPosition());
-    m_sum -= m_samples[m_index];
-    m_samples[m_index] = m_turningAnalogSensor.getPosition();
-    m_logAbsoluteEncoderPosition.append(m_samples[m_index]);
-    m_sum += m_samples[m_index];
-    m_logAbsoluteEncoderAverage.append(m_sum / 50);
-    m_index += 1;
-    if (m_index == 50) {
-      m_index = 0;
-      m_valid = true;
+  /**
+   * Compares the turning encoder to the absolute encoder while steering is stationary,
+   * and reseeds the turning encoder if they have drifted apart, for example after a belt
+   * skip or a SPARK MAX reset. Steering motion clears the comparison window.
+   */
+  private void resyncTurningEncoder() {
+    if (Math.abs(m_turningEncoder.getVelocity()) >= Constants.SwerveModule.kIdleTurningVelocity) {
+      m_steeringDrift.clear();
+      return;
     }
+
+    double relative = m_turningEncoder.getPosition();
+    double absolute = m_turningAnalogSensor.getPosition() - m_resetOffset;
+    m_steeringDrift.add(MathUtil.angleModulus(absolute - relative));
+
+    if (!m_steeringDrift.isFull()
+        || Math.abs(m_steeringDrift.getMean()) < Constants.SwerveModule.kSteeringDriftThreshold
+        || m_steeringDrift.getStandardDeviation() > Constants.SwerveModule.kSteeringDriftMaxStdDev) {
+      return;
+    }
+
+    double correction = m_steeringDrift.getMean();
+    m_turningEncoder.setPosition(relative + correction);
+    m_steeringDrift.clear();
+    m_steeringCorrectionCount += 1;
+    m_logSteeringCorrection.append(correction);
+    Logger.log(String.format(
+      "%s swerve module turning encoder drifted %.1f degrees, resynchronized from absolute encoder.",
+      m_location.toString(),
+      Math.toDegrees(correction)));
+  }
+
+  /** @return the number of times the turning encoder was resynchronized while enabled. */
+  public int getSteeringCorrectionCount() {
+    return m_steeringCorrectionCount;
+  }
+
+  /** @return true if the module is not being driven and is not moving. */
+  private boolean isIdle() {
+    return m_desiredSpeed == 0.0
+      && Math.abs(m_drivingEncoder.getVelocity()) < Constants.SwerveModule.kIdleDrivingVelocity
+      && Math.abs(m_turningEncoder.getVelocity()) < Constants.SwerveModule.kIdleTurningVelocity;
+  }
+
+  /**
+   * @return true once the absolute encoder window is full and its samples agree closely
+   *     enough to reseed the turning encoder from their mean.
+   */
+  public boolean isAbsoluteEncoderSettled() {
+    return m_absoluteEncoder.isFull()
+      && m_absoluteEncoder.getStandardDeviation() < Constants.SwerveModule.kAbsoluteEncoderSettledStdDev;
   }
 
   public void resetTurningEncoder() {
-    if (!m_valid) { return; }
-    double initialAngle = (m_sum / 50.0) - m_resetOffset;
-    m_desiredState.angle = new Rotation2d(initialAngle);
+    if (!isAbsoluteEncoderSettled()) {
+      Logger.log(m_location.toString() + " swerve module absolute encoder not settled, turning encoder not reset.");
+      return;
+    }
+    double initialAngle = m_absoluteEncoder.getMean() - m_resetOffset;
+    m_desiredAngle = initialAngle;
     m_drivingEncoder.setPosition(0.0);
     m_turningEncoder.setPosition(initialAngle);
+    m_steeringDrift.clear();
   }
 
   /**
@@ -212,28 +302,74 @@ public class SwerveModule implements Sendable {
         new Rotation2d(m_turningEncoder.getPosition() - m_chassisAngularOffset));
   }
 
+  /**
+   * Updates a module position in place with the current position of the module. The
+   * angle is only replaced when the module has actually steered, so a module driving
+   * straight does not allocate.
+   *
+   * @param position The position to update.
+   */
+  public void updatePosition(SwerveModulePosition position) {
+    double angle = getAngleRadians();
+    position.distanceMeters = m_drivingEncoder.getPosition();
+    if (position.angle.getRadians() != angle) {
+      position.angle = new Rotation2d(angle);
+    }
+  }
+
   /**
    * Sets the desired state for the module.
    *
    * @param desiredState Desired state with speed and angle.
    */
   public void setDesiredState(SwerveModuleState desiredState) {
+    setDesiredState(desiredState.speedMetersPerSecond, desiredState.angle.getRadians());
+  }
+
+  /**
+   * Sets the desired state for the module without allocating any objects.
+   *
+   * @param speed Desired speed in meters per second.
+   * @param angle Desired angle in radians, relative to the chassis.
+   */
+  public void setDesiredState(double speed, double angle) {
     // Apply chassis angular offset to the desired state.
-    SwerveModuleState correctedDesiredState = new SwerveModuleState();
-    correctedDesiredState.speedMetersPerSecond = desiredState.speedMetersPerSecond;
-    correctedDesiredState.angle = desiredState.angle.plus(Rotation2d.fromRadians(m_chassisAngularOffset));
+    double correctedAngle = angle + m_chassisAngularOffset;
 
     // Optimize the reference state to avoid spinning further than 90 degrees.
-    SwerveModuleState optimizedDesiredState = SwerveModuleState.optimize(correctedDesiredState,
-        new Rotation2d(m_turningEncoder.getPosition()));
+    double optimizedSpeed = speed;
+    double optimizedAngle = correctedAngle;
+    if (Math.abs(MathUtil.angleModulus(correctedAngle - m_turningEncoder.getPosition())) > Math.PI / 2) {
+      optimizedSpeed = -speed;
+      optimizedAngle = correctedAngle + Math.PI;
+    }
+
+    // Only send tuned gains to the SPARK MAX when they have actually changed.
+    if (m_drivingP.getVersion() != m_drivingPVersion) {
+      m_drivingPIDController.setP(m_drivingP.get());
+      m_drivingPVersion = m_drivingP.getVersion();
+    }
+    if (m_drivingD.getVersion() != m_drivingDVersion) {
+      m_drivingPIDController.setD(m_drivingD.get());
+      m_drivingDVersion = m_drivingD.getVersion();
+    }
 
     // Command driving and turning SPARKS MAX towards their respective setpoints.
-    m_drivingPIDController.setP(SmartDashboard.getNumber("P", Constants.SwerveModule.kDrivingP));
-    m_drivingPIDController.setD(SmartDashboard.getNumber("D", Constants.SwerveModule.kDrivingD));
-    m_drivingPIDController.setReference(optimizedDesiredState.speedMetersPerSecond, CANSparkMax.ControlType.kVelocity);
-    m_turningPIDController.setReference(optimizedDesiredState.angle.getRadians(), CANSparkMax.ControlType.kPosition);
+    m_drivingSparkMax.setReference(optimizedSpeed, CANSparkMax.ControlType.kVelocity);
+    m_turningSparkMax.setReference(MathUtil.angleModulus(optimizedAngle), CANSparkMax.ControlType.kPosition);
 
-    m_desiredState = desiredState;
+    m_desiredSpeed = speed;
+    m_desiredAngle = angle;
+  }
+
+  /** @return The last commanded speed in meters per second. */
+  public double getDesiredSpeed() {
+    return m_desiredSpeed;
+  }
+
+  /** @return The last commanded angle in radians, relative to the chassis. */
+  public double getDesiredAngle() {
+    return m_desiredAngle;
   }
 
   /** Zeroes all the SwerveModule encoders. */
@@ -241,6 +377,16 @@ public class SwerveModule implements Sendable {
     m_drivingEncoder.setPosition(0.0);
   }
 
+  /**
+   * Returns the steering angle of the module relative to the chassis, without
+   * allocating a Rotation2d.
+   *
+   * @return The steering angle in radians.
+   */
+  public double getAngleRadians() {
+    return m_turningEncoder.getPosition() - m_chassisAngularOffset;
+  }
+
   public double getSteeringRelativePosition(){
    return m_turningEncoder.getPosition();
   }
@@ -263,5 +409,6 @@ public class SwerveModule implements Sendable {
     builder.addDoubleProperty(key + "Steering/AbsolutePosition", this::getSteeringAbsolutePosition, null);
     builder.addDoubleProperty(key + "Steering/RelativePosition", this::getSteeringRelativePosition, null);
     builder.addDoubleProperty(key + "Driving/Velocity", this::getDrivingVelocity, null);
+    builder.addDoubleProperty(key + "Steering/Corrections", this::getSteeringCorrectionCount, null);
   }
 }
\ No newline at end of file
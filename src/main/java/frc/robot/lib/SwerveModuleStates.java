@@ -0,0 +1,164 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A preallocated, mutable set of swerve module states. This does the same work as
+ * SwerveDriveKinematics.toSwerveModuleStates() and desaturateWheelSpeeds(), but writes
+ * the results into primitive arrays in place so the drive loop does not allocate
+ * ChassisSpeeds, SwerveModuleState or Rotation2d objects every cycle.
+ */
+public class SwerveModuleStates {
+  private final double[] m_moduleX;
+  private final double[] m_moduleY;
+
+  /** Module speeds in meters per second, in kinematics order. */
+  public final double[] speeds;
+
+  /** Module angles in radians relative to the chassis, in kinematics order. */
+  public final double[] angles;
+
+  /**
+   * @param moduleTranslations the locations of the modules relative to the center of the robot.
+   */
+  public SwerveModuleStates(Translation2d... moduleTranslations) {
+    int count = moduleTranslations.length;
+    m_moduleX = new double[count];
+    m_moduleY = new double[count];
+    speeds = new double[count];
+    angles = new double[count];
+    for (int i = 0; i < count; i += 1) {
+      m_moduleX[i] = moduleTranslations[i].getX();
+      m_moduleY[i] = moduleTranslations[i].getY();
+    }
+  }
+
+  /** @return the number of modules. */
+  public int size() {
+    return speeds.length;
+  }
+
+  /**
+   * Computes the module states for robot-relative chassis speeds. Like WPILib, when the
+   * chassis is commanded to stop the modules keep their previous angles.
+   *
+   * @param vx forward velocity in meters per second.
+   * @param vy sideways velocity in meters per second.
+   * @param omega angular velocity in radians per second.
+   */
+  public void fromChassisSpeeds(double vx, double vy, double omega) {
+    if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+      for (int i = 0; i < speeds.length; i += 1) {
+        speeds[i] = 0.0;
+      }
+      return;
+    }
+
+    for (int i = 0; i < speeds.length; i += 1) {
+      double x = vx - omega * m_moduleY[i];
+      double y = vy + omega * m_moduleX[i];
+      speeds[i] = Math.hypot(x, y);
+      angles[i] = Math.atan2(y, x);
+    }
+  }
+
+  /**
+   * Computes the module states for robot-relative chassis speeds that are held for one
+   * loop. Driving straight at constant speeds while rotating traces a curve, so the
+   * robot drifts sideways over the loop. This finds the speeds whose curved motion over
+   * the loop ends at the pose the commanded speeds aim for (the inverse pose exponential).
+   *
+   * @param vx forward velocity in meters per second.
+   * @param vy sideways velocity in meters per second.
+   * @param omega angular velocity in radians per second.
+   * @param dt the time the speeds will be held for, in seconds.
+   */
+  public void fromChassisSpeeds(double vx, double vy, double omega, double dt) {
+    if (dt <= 0.0) {
+      fromChassisSpeeds(vx, vy, omega);
+      return;
+    }
+
+    double dx = vx * dt;
+    double dy = vy * dt;
+    double dtheta = omega * dt;
+
+    double halfTheta = dtheta / 2;
+    double cosMinusOne = Math.cos(dtheta) - 1;
+    double halfThetaByTanOfHalfTheta;
+    if (Math.abs(cosMinusOne) < 1e-9) {
+      halfThetaByTanOfHalfTheta = 1.0 - dtheta * dtheta / 12.0;
+    } else {
+      halfThetaByTanOfHalfTheta = -(halfTheta * Math.sin(dtheta)) / cosMinusOne;
+    }
+
+    double twistX = dx * halfThetaByTanOfHalfTheta + dy * halfTheta;
+    double twistY = -dx * halfTheta + dy * halfThetaByTanOfHalfTheta;
+    fromChassisSpeeds(twistX / dt, twistY / dt, omega);
+  }
+
+  /**
+   * Computes the module states for field-relative chassis speeds.
+   *
+   * @param vx velocity toward the opposing alliance wall in meters per second.
+   * @param vy velocity toward the left field boundary in meters per second.
+   * @param omega angular velocity in radians per second.
+   * @param headingRadians the current heading of the robot.
+   */
+  public void fromFieldRelativeSpeeds(double vx, double vy, double omega, double headingRadians) {
+    double cos = Math.cos(headingRadians);
+    double sin = Math.sin(headingRadians);
+    fromChassisSpeeds(vx * cos + vy * sin, -vx * sin + vy * cos, omega);
+  }
+
+  /**
+   * Computes the module states for field-relative chassis speeds held for one loop,
+   * compensating for the sideways drift from rotating while translating.
+   *
+   * @param vx velocity toward the opposing alliance wall in meters per second.
+   * @param vy velocity toward the left field boundary in meters per second.
+   * @param omega angular velocity in radians per second.
+   * @param headingRadians the current heading of the robot.
+   * @param dt the time the speeds will be held for, in seconds.
+   */
+  public void fromFieldRelativeSpeeds(double vx, double vy, double omega, double headingRadians, double dt) {
+    double cos = Math.cos(headingRadians);
+    double sin = Math.sin(headingRadians);
+    fromChassisSpeeds(vx * cos + vy * sin, -vx * sin + vy * cos, omega, dt);
+  }
+
+  /**
+   * Scales all module speeds down proportionally so that none exceed the maximum.
+   *
+   * @param maxSpeed the maximum attainable module speed in meters per second.
+   */
+  public void desaturate(double maxSpeed) {
+    double realMaxSpeed = 0.0;
+    for (int i = 0; i < speeds.length; i += 1) {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speeds[i]));
+    }
+    if (realMaxSpeed > maxSpeed) {
+      double scale = maxSpeed / realMaxSpeed;
+      for (int i = 0; i < speeds.length; i += 1) {
+        speeds[i] *= scale;
+      }
+    }
+  }
+
+  /**
+   * Sets a single module state.
+   *
+   * @param index the module index.
+   * @param speed the module speed in meters per second.
+   * @param angle the module angle in radians.
+   */
+  public void set(int index, double speed, double angle) {
+    speeds[index] = speed;
+    angles[index] = angle;
+  }
+}
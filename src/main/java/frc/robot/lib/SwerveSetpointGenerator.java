@@ -0,0 +1,118 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Turns target swerve module states into states the modules can actually reach by the
+ * next loop. Every module's velocity vector is moved toward its target by the same
+ * fraction, chosen so that no module accelerates faster than the drive limit, which keeps
+ * the modules agreeing on a single chassis motion. Each module then turns no faster than
+ * the steering limit and only drives the part of its speed along the way it is pointing,
+ * so wheels are not driven hard while they are still turning.
+ */
+public class SwerveSetpointGenerator {
+
+  /** The physical limits of a swerve module. */
+  public static final class Limits {
+    /** The largest change in module velocity, in meters per second squared. */
+    public final double maxDriveAcceleration;
+    /** The fastest a module can turn, in radians per second. */
+    public final double maxSteeringRate;
+
+    public Limits(double maxDriveAcceleration, double maxSteeringRate) {
+      this.maxDriveAcceleration = maxDriveAcceleration;
+      this.maxSteeringRate = maxSteeringRate;
+    }
+  }
+
+  // Below this speed a module's direction is meaningless, so it keeps its angle.
+  private static final double kStoppedSpeed = 1e-3;
+
+  private final double[] m_vx;
+  private final double[] m_vy;
+  private final double[] m_angles;
+
+  /**
+   * @param moduleCount the number of swerve modules.
+   */
+  public SwerveSetpointGenerator(int moduleCount) {
+    m_vx = new double[moduleCount];
+    m_vy = new double[moduleCount];
+    m_angles = new double[moduleCount];
+  }
+
+  /**
+   * Sets the previous setpoint, for example to the states last sent to the modules when
+   * the generator is switched on.
+   *
+   * @param speeds module speeds in meters per second.
+   * @param angles module angles in radians relative to the chassis.
+   */
+  public void reset(double[] speeds, double[] angles) {
+    for (int i = 0; i < m_angles.length; i += 1) {
+      m_vx[i] = speeds[i] * Math.cos(angles[i]);
+      m_vy[i] = speeds[i] * Math.sin(angles[i]);
+      m_angles[i] = angles[i];
+    }
+  }
+
+  /**
+   * Replaces the target states with the closest states reachable within the limits and
+   * remembers them as the previous setpoint. This does not allocate.
+   *
+   * @param states the target states, overwritten with the feasible setpoint.
+   * @param limits the module limits.
+   * @param dt the time since the previous setpoint, in seconds.
+   */
+  public void generate(SwerveModuleStates states, Limits limits, double dt) {
+    int count = m_angles.length;
+
+    // The largest fraction of the way to the target every module can go at once.
+    double maxVelocityStep = limits.maxDriveAcceleration * dt;
+    double fraction = 1.0;
+    for (int i = 0; i < count; i += 1) {
+      double dvx = states.speeds[i] * Math.cos(states.angles[i]) - m_vx[i];
+      double dvy = states.speeds[i] * Math.sin(states.angles[i]) - m_vy[i];
+      double step = Math.hypot(dvx, dvy);
+      if (step > maxVelocityStep) {
+        fraction = Math.min(fraction, maxVelocityStep / step);
+      }
+    }
+
+    double maxAngleStep = limits.maxSteeringRate * dt;
+    for (int i = 0; i < count; i += 1) {
+      double vx = m_vx[i] + (states.speeds[i] * Math.cos(states.angles[i]) - m_vx[i]) * fraction;
+      double vy = m_vy[i] + (states.speeds[i] * Math.sin(states.angles[i]) - m_vy[i]) * fraction;
+      double speed = Math.hypot(vx, vy);
+
+      if (speed < kStoppedSpeed) {
+        m_vx[i] = 0.0;
+        m_vy[i] = 0.0;
+        states.set(i, 0.0, m_angles[i]);
+        continue;
+      }
+
+      // Drive backwards rather than turn a module more than 90 degrees.
+      double angle = Math.atan2(vy, vx);
+      double error = MathUtil.angleModulus(angle - m_angles[i]);
+      if (Math.abs(error) > Math.PI / 2) {
+        speed = -speed;
+        error = MathUtil.angleModulus(error + Math.PI);
+      }
+
+      double turn = MathUtil.clamp(error, -maxAngleStep, maxAngleStep);
+      double newAngle = MathUtil.angleModulus(m_angles[i] + turn);
+      double newSpeed = speed * Math.cos(error - turn);
+
+      m_vx[i] = newSpeed * Math.cos(newAngle);
+      m_vy[i] = newSpeed * Math.sin(newAngle);
+      m_angles[i] = newAngle;
+      states.set(i, newSpeed, newAngle);
+    }
+  }
+}
@@ -5,6 +5,15 @@
 
 package frc.robot.lib;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.RobotState;
 import edu.wpi.first.wpilibj.Timer;
@@ -16,14 +25,142 @@ import frc.robot.Robot;
 public final class Telemetry {
   private static boolean m_isAllTelemetryEnabled = false;
 
+  /** How often registered signals are checked to see if they are due to be published. */
+  private static final double kSignalUpdatePeriod = 0.02;
+
+  private static final NetworkTable m_table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+  private static final List<Signal> m_signals = new ArrayList<>();
+
+  /** A value published to NetworkTables at its own rate, only when it has changed enough. */
+  private static abstract class Signal {
+    private final double m_period;
+    private double m_nextTimestamp = 0.0;
+
+    Signal(double period) {
+      m_period = period;
+    }
+
+    abstract void publish();
+  }
+
+  private static final class DoubleSignal extends Signal {
+    private final DoublePublisher m_publisher;
+    private final DoubleSupplier m_supplier;
+    private final double m_threshold;
+    private double m_lastValue = Double.NaN;
+
+    DoubleSignal(String name, DoubleSupplier supplier, double period, double threshold) {
+      super(period);
+      m_publisher = m_table.getDoubleTopic(name).publish();
+      m_supplier = supplier;
+      m_threshold = threshold;
+    }
+
+    @Override
+    void publish() {
+      double value = m_supplier.getAsDouble();
+      if (!(Math.abs(value - m_lastValue) <= m_threshold)) {
+        m_publisher.set(value);
+        m_lastValue = value;
+      }
+    }
+  }
+
+  private static final class DoubleArraySignal extends Signal {
+    private final DoubleArrayPublisher m_publisher;
+    private final Supplier<double[]> m_supplier;
+    private final double m_threshold;
+    private double[] m_lastValue = null;
+
+    DoubleArraySignal(String name, Supplier<double[]> supplier, double period, double threshold) {
+      super(period);
+      m_publisher = m_table.getDoubleArrayTopic(name).publish();
+      m_supplier = supplier;
+      m_threshold = threshold;
+    }
+
+    @Override
+    void publish() {
+      double[] value = m_supplier.get();
+      if (m_lastValue == null || m_lastValue.length != value.length) {
+        m_lastValue = new double[value.length];
+      } else if (!hasChanged(value)) {
+        return;
+      }
+      m_publisher.set(value);
+      System.arraycopy(value, 0, m_lastValue, 0, value.length);
+    }
+
+    private boolean hasChanged(double[] value) {
+      for (int i = 0; i < value.length; i += 1) {
+        if (!(Math.abs(value[i] - m_lastValue[i]) <= m_threshold)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
   /** Initializes default telemetry settings and topics with custom periodic updates */
   public static void start() {
     SmartDashboard.putBoolean("IsAllTelemetryEnabled", m_isAllTelemetryEnabled);
 
-    Robot.addCustomPeriodic(Telemetry::updateRobotInfo, 1);
-    Robot.addCustomPeriodic(Telemetry::updateMatchInfo, 0.3);
-    Robot.addCustomPeriodic(Telemetry::updateFPGATimestamp, 2.0);
-    Robot.addCustomPeriodic(Telemetry::updateTelemetrySetting, 3.0);
+    Robot.addCustomPeriodic("Telemetry/RobotInfo", Telemetry::updateRobotInfo, 1);
+    Robot.addCustomPeriodic("Telemetry/MatchInfo", Telemetry::updateMatchInfo, 0.3);
+    Robot.addCustomPeriodic("Telemetry/FPGATimestamp", Telemetry::updateFPGATimestamp, 2.0);
+    Robot.addCustomPeriodic("Telemetry/Setting", Telemetry::updateTelemetrySetting, 3.0);
+    Robot.addCustomPeriodic("Telemetry/Signals", Telemetry::updateSignals, kSignalUpdatePeriod, PeriodicScheduler.Priority.NORMAL, 0.002);
+  }
+
+  /**
+   * Registers a number to publish under SmartDashboard. The supplier is read at most once
+   * per period and the value is only sent when it has moved by more than the threshold.
+   * Call this once, when the owner is constructed, not from periodic code.
+   *
+   * @param name the SmartDashboard key.
+   * @param supplier supplies the current value.
+   * @param periodSeconds how often to read the value.
+   * @param threshold the smallest change worth publishing.
+   */
+  public static void addDouble(String name, DoubleSupplier supplier, double periodSeconds, double threshold) {
+    m_signals.add(new DoubleSignal(name, supplier, periodSeconds, threshold));
+  }
+
+  /**
+   * Registers a number to publish under SmartDashboard whenever it changes, at most once
+   * per period.
+   *
+   * @param name the SmartDashboard key.
+   * @param supplier supplies the current value.
+   * @param periodSeconds how often to read the value.
+   */
+  public static void addDouble(String name, DoubleSupplier supplier, double periodSeconds) {
+    addDouble(name, supplier, periodSeconds, 0.0);
+  }
+
+  /**
+   * Registers an array of numbers to publish under SmartDashboard. The supplier may
+   * return the same array every time; it is copied before the next read.
+   *
+   * @param name the SmartDashboard key.
+   * @param supplier supplies the current values.
+   * @param periodSeconds how often to read the values.
+   * @param threshold the smallest change in any element worth publishing.
+   */
+  public static void addDoubleArray(String name, Supplier<double[]> supplier, double periodSeconds, double threshold) {
+    m_signals.add(new DoubleArraySignal(name, supplier, periodSeconds, threshold));
+  }
+
+  /** This periodic function publishes every registered signal that is due. */
+  private static void updateSignals() {
+    double timestamp = Timer.getFPGATimestamp();
+    for (int i = 0; i < m_signals.size(); i += 1) {
+      Signal signal = m_signals.get(i);
+      if (timestamp >= signal.m_nextTimestamp) {
+        signal.m_nextTimestamp = timestamp + signal.m_period;
+        signal.publish();
+      }
+    }
   }
 
   /** This periodic function supports providing the current robot mode and status to the driver station dashbaoard app */
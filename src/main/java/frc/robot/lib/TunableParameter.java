@@ -0,0 +1,102 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+import frc.robot.Robot;
+
+/**
+ * A number that can be tuned from the dashboard. All parameters are kept in one registry
+ * that polls their NetworkTables topics at a low rate and caches the values, so reading a
+ * parameter in a control loop is just a field access. Each parameter carries a version
+ * counter that increases whenever its value changes, letting callers push new values to
+ * hardware only when needed.
+ *
+ * In competition mode tuning is disabled and every parameter is held at its default.
+ */
+public final class TunableParameter {
+  private static final List<TunableParameter> m_parameters = new ArrayList<>();
+  private static boolean m_isTuningEnabled = true;
+
+  private final String m_name;
+  private final double m_defaultValue;
+  private final DoubleEntry m_entry;
+  private double m_value;
+  private int m_version = 0;
+
+  /**
+   * Creates a parameter and publishes its default value to the dashboard.
+   *
+   * @param name the SmartDashboard key of the parameter.
+   * @param defaultValue the value to use until, or unless, it is tuned.
+   */
+  public TunableParameter(String name, double defaultValue) {
+    m_name = name;
+    m_defaultValue = defaultValue;
+    m_value = defaultValue;
+    m_entry = NetworkTableInstance.getDefault()
+      .getTable("SmartDashboard")
+      .getDoubleTopic(name)
+      .getEntry(defaultValue);
+    m_entry.set(defaultValue);
+    m_parameters.add(this);
+  }
+
+  /** Starts polling all registered parameters for changes. */
+  public static void start() {
+    Robot.addCustomPeriodic("TunableParameters", TunableParameter::updateAll, 0.25);
+  }
+
+  /** This periodic function reads any changed values from the dashboard. */
+  private static void updateAll() {
+    if (Robot.isCompetitionMode()) {
+      if (m_isTuningEnabled) {
+        m_isTuningEnabled = false;
+        for (TunableParameter parameter : m_parameters) {
+          parameter.reset();
+        }
+      }
+      return;
+    }
+
+    m_isTuningEnabled = true;
+    for (TunableParameter parameter : m_parameters) {
+      parameter.update();
+    }
+  }
+
+  private void update() {
+    double value = m_entry.get(m_value);
+    if (value != m_value) {
+      m_value = value;
+      m_version += 1;
+      Logger.log("Tunable parameter " + m_name + " changed to " + value);
+    }
+  }
+
+  private void reset() {
+    m_entry.set(m_defaultValue);
+    if (m_value != m_defaultValue) {
+      m_value = m_defaultValue;
+      m_version += 1;
+    }
+  }
+
+  /** @return the current value of the parameter. */
+  public double get() {
+    return m_value;
+  }
+
+  /** @return a counter that increases each time the value changes. */
+  public int getVersion() {
+    return m_version;
+  }
+}
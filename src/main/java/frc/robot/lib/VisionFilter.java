@@ -0,0 +1,267 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotState;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Decides whether a vision measurement is believable before it reaches the pose
+ * estimator. A measurement is rejected if it is off the field, if it comes from a single
+ * ambiguous tag, if its heading disagrees with where the gyro says the robot was pointing
+ * at that time, or if it is too far from where odometry says the robot was. Accepted and
+ * rejected frames are counted per camera and reason, and the distance between each
+ * measurement and odometry is kept as a histogram for tuning.
+ *
+ * The heading and odometry distance checks assume odometry is roughly right, which is
+ * not true before the first fix or after the robot is pushed. They are skipped until a
+ * fix has been accepted and while the robot is disabled, and after enough consecutive
+ * rejected fixes agree on the same offset from odometry, the odometry is taken to be
+ * wrong and the latest fix is accepted. Each bypass is logged.
+ */
+public class VisionFilter {
+
+  private static final double kBypassLogPeriod = 1.0;
+
+  /** The outcome of checking one measurement. */
+  public static enum Result {
+    ACCEPTED,
+    OUT_OF_FIELD,
+    AMBIGUOUS,
+    HEADING_MISMATCH,
+    INNOVATION_TOO_LARGE
+  }
+
+  /** The thresholds used to reject measurements. */
+  public static final class Thresholds {
+    /** Length of the field along x, in meters. */
+    public final double fieldLength;
+    /** Width of the field along y, in meters. */
+    public final double fieldWidth;
+    /** How far outside the field walls a pose may be, in meters. */
+    public final double fieldMargin;
+    /** The largest average ambiguity accepted from a single tag, from 0 to 1. */
+    public final double maxAmbiguity;
+    /** The largest heading difference from the gyro, in radians. */
+    public final double maxHeadingError;
+    /** The largest distance from the odometry pose, in meters. */
+    public final double maxInnovation;
+    /** How many consecutive rejected fixes must agree before odometry is overruled. */
+    public final int recoveryCount;
+    /** How closely consecutive rejected fixes' offsets from odometry must agree, in meters. */
+    public final double recoveryAgreement;
+
+    public Thresholds(
+      double fieldLength,
+      double fieldWidth,
+      double fieldMargin,
+      double maxAmbiguity,
+      double maxHeadingError,
+      double maxInnovation,
+      int recoveryCount,
+      double recoveryAgreement
+    ) {
+      this.fieldLength = fieldLength;
+      this.fieldWidth = fieldWidth;
+      this.fieldMargin = fieldMargin;
+      this.maxAmbiguity = maxAmbiguity;
+      this.maxHeadingError = maxHeadingError;
+      this.maxInnovation = maxInnovation;
+      this.recoveryCount = recoveryCount;
+      this.recoveryAgreement = recoveryAgreement;
+    }
+  }
+
+  /** Accepted and rejected frame counts and the innovation histogram for one camera. */
+  public static final class Statistics {
+    private final long[] m_counts = new long[Result.values().length];
+    private final long[] m_innovationHistogram;
+    private final double[] m_innovationHistogramValues;
+    private final DoubleLogEntry m_logInnovation;
+    private final IntegerLogEntry m_logResult;
+
+    private Statistics(String cameraName, int bucketCount) {
+      m_innovationHistogram = new long[bucketCount];
+      m_innovationHistogramValues = new double[bucketCount];
+      m_logInnovation = new DoubleLogEntry(DataLogManager.getLog(), "drive/Vision/" + cameraName + "/Innovation");
+      m_logResult = new IntegerLogEntry(DataLogManager.getLog(), "drive/Vision/" + cameraName + "/Result");
+    }
+
+    /** @return the number of frames with the given result. */
+    public long getCount(Result result) {
+      return m_counts[result.ordinal()];
+    }
+
+    /** @return the number of frames that were rejected for any reason. */
+    public long getRejectedCount() {
+      long count = 0;
+      for (int i = 1; i < m_counts.length; i += 1) {
+        count += m_counts[i];
+      }
+      return count;
+    }
+
+    /**
+     * @return the number of frames in each innovation bucket. The last bucket holds
+     *     everything beyond the histogram range. The array is reused between calls.
+     */
+    public double[] getInnovationHistogram() {
+      for (int i = 0; i < m_innovationHistogram.length; i += 1) {
+        m_innovationHistogramValues[i] = m_innovationHistogram[i];
+      }
+      return m_innovationHistogramValues;
+    }
+  }
+
+  private Thresholds m_thresholds;
+  private final double m_bucketWidth;
+  private final int m_bucketCount;
+  private final Map<String, Statistics> m_statistics = new HashMap<>();
+
+  private boolean m_hasAcceptedFix = false;
+  private final double[] m_rejectedOffset = new double[3];
+  private int m_agreeingCount = 0;
+  private long m_unloggedBypassCount = 0;
+  private double m_lastBypassLogTimestamp = -kBypassLogPeriod;
+
+  /**
+   * @param thresholds the limits used to reject measurements.
+   * @param bucketWidth the width of each innovation histogram bucket, in meters.
+   * @param bucketCount the number of innovation histogram buckets, including the overflow bucket.
+   */
+  public VisionFilter(Thresholds thresholds, double bucketWidth, int bucketCount) {
+    m_thresholds = thresholds;
+    m_bucketWidth = bucketWidth;
+    m_bucketCount = bucketCount;
+  }
+
+  /**
+   * Replaces the limits used to reject measurements, for example with a stricter set
+   * during autonomous. Statistics are kept across the change.
+   *
+   * @param thresholds the limits used to reject measurements.
+   */
+  public void setThresholds(Thresholds thresholds) {
+    m_thresholds = thresholds;
+  }
+
+  /**
+   * Checks a measurement and records the outcome against its camera.
+   *
+   * @param measurement the vision measurement.
+   * @param odometryPose where odometry says the robot was at the time of the measurement:
+   *     x (meters), y (meters) and heading (radians), or null if that is not known yet.
+   * @return the outcome; only {@link Result#ACCEPTED} measurements should be used.
+   */
+  public Result check(VisionMeasurement measurement, double[] odometryPose) {
+    Statistics statistics = getStatistics(measurement.cameraName);
+
+    double innovation = Double.NaN;
+    if (odometryPose != null) {
+      innovation = Math.hypot(
+        measurement.pose.getX() - odometryPose[0],
+        measurement.pose.getY() - odometryPose[1]);
+      statistics.m_innovationHistogram[Math.min((int)(innovation / m_bucketWidth), m_bucketCount - 1)] += 1;
+      statistics.m_logInnovation.append(innovation);
+    }
+
+    Result result = evaluate(measurement, odometryPose, innovation);
+    statistics.m_counts[result.ordinal()] += 1;
+    statistics.m_logResult.append(result.ordinal());
+    return result;
+  }
+
+  private Result evaluate(VisionMeasurement measurement, double[] odometryPose, double innovation) {
+    double x = measurement.pose.getX();
+    double y = measurement.pose.getY();
+    if (x < -m_thresholds.fieldMargin
+        || x > m_thresholds.fieldLength + m_thresholds.fieldMargin
+        || y < -m_thresholds.fieldMargin
+        || y > m_thresholds.fieldWidth + m_thresholds.fieldMargin) {
+      return Result.OUT_OF_FIELD;
+    }
+
+    // Multi-tag solutions do not suffer from the single-tag flip ambiguity.
+    if (measurement.tagCount <= 1 && measurement.averageAmbiguity > m_thresholds.maxAmbiguity) {
+      return Result.AMBIGUOUS;
+    }
+
+    if (odometryPose != null) {
+      double headingError = MathUtil.angleModulus(measurement.pose.getRotation().getRadians() - odometryPose[2]);
+      Result result = Result.ACCEPTED;
+      if (Math.abs(headingError) > m_thresholds.maxHeadingError) {
+        result = Result.HEADING_MISMATCH;
+      } else if (innovation > m_thresholds.maxInnovation) {
+        result = Result.INNOVATION_TOO_LARGE;
+      }
+
+      if (result != Result.ACCEPTED) {
+        if (!m_hasAcceptedFix) {
+          logBypass(measurement, result, "no fix accepted yet");
+        } else if (RobotState.isDisabled()) {
+          logBypass(measurement, result, "robot disabled");
+        } else if (isRecovering(measurement, odometryPose, headingError)) {
+          logBypass(measurement, result, m_thresholds.recoveryCount + " agreeing fixes");
+        } else {
+          return result;
+        }
+      }
+    }
+
+    m_hasAcceptedFix = true;
+    m_agreeingCount = 0;
+    return Result.ACCEPTED;
+  }
+
+  /**
+   * Tracks consecutive rejected fixes that put odometry off by the same amount.
+   *
+   * @return true if enough of them agree that odometry should be overruled.
+   */
+  private boolean isRecovering(VisionMeasurement measurement, double[] odometryPose, double headingError) {
+    double dx = measurement.pose.getX() - odometryPose[0];
+    double dy = measurement.pose.getY() - odometryPose[1];
+    boolean isAgreeing = m_agreeingCount > 0
+      && Math.hypot(dx - m_rejectedOffset[0], dy - m_rejectedOffset[1]) <= m_thresholds.recoveryAgreement
+      && Math.abs(MathUtil.angleModulus(headingError - m_rejectedOffset[2])) <= m_thresholds.maxHeadingError;
+    m_agreeingCount = isAgreeing ? m_agreeingCount + 1 : 1;
+    m_rejectedOffset[0] = dx;
+    m_rejectedOffset[1] = dy;
+    m_rejectedOffset[2] = headingError;
+    return m_agreeingCount >= m_thresholds.recoveryCount;
+  }
+
+  /** Logs a bypass, at most once a second, with the number of bypasses not logged since. */
+  private void logBypass(VisionMeasurement measurement, Result result, String reason) {
+    m_unloggedBypassCount += 1;
+    double timestamp = Timer.getFPGATimestamp();
+    if (timestamp - m_lastBypassLogTimestamp < kBypassLogPeriod) { return; }
+    Logger.log(String.format("Vision %s: accepting %s fix (%s) at %.2f, %.2f (%d bypasses since last report)",
+      measurement.cameraName, result, reason, measurement.pose.getX(), measurement.pose.getY(), m_unloggedBypassCount));
+    m_unloggedBypassCount = 0;
+    m_lastBypassLogTimestamp = timestamp;
+  }
+
+  /**
+   * @param cameraName the name of the camera.
+   * @return the statistics for that camera, created on first use.
+   */
+  public Statistics getStatistics(String cameraName) {
+    Statistics statistics = m_statistics.get(cameraName);
+    if (statistics == null) {
+      statistics = new Statistics(cameraName, m_bucketCount);
+      m_statistics.put(cameraName, statistics);
+    }
+    return statistics;
+  }
+}
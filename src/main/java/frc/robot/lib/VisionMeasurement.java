@@ -0,0 +1,80 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+import frc.robot.Constants;
+
+/**
+ * A robot pose estimated from one camera frame, along with how much the pose estimator
+ * should trust it. Trust falls off with the distance to the tags, is higher when several
+ * tags were seen, and is lower for ambiguous single-tag solutions.
+ */
+public class VisionMeasurement {
+  /** The name of the camera that produced the measurement. */
+  public final String cameraName;
+
+  /** The estimated robot pose on the field. */
+  public final Pose2d pose;
+
+  /** FPGA timestamp of the camera frame, in seconds. */
+  public final double timestampSeconds;
+
+  /** The number of AprilTags used for the estimate. */
+  public final int tagCount;
+
+  /** The average distance from the camera to the tags used, in meters. */
+  public final double averageTagDistance;
+
+  /** The average pose ambiguity of the tags used, from 0 to 1. */
+  public final double averageAmbiguity;
+
+  /** Standard deviations of the measurement in x (meters), y (meters) and heading (radians). */
+  public final Matrix<N3, N1> stdDevs;
+
+  public VisionMeasurement(String cameraName, EstimatedRobotPose estimatedRobotPose) {
+    this.cameraName = cameraName;
+    this.pose = estimatedRobotPose.estimatedPose.toPose2d();
+    this.timestampSeconds = estimatedRobotPose.timestampSeconds;
+
+    int count = 0;
+    double distance = 0.0;
+    double ambiguity = 0.0;
+    for (PhotonTrackedTarget target : estimatedRobotPose.targetsUsed) {
+      distance += target.getBestCameraToTarget().getTranslation().getNorm();
+      ambiguity += Math.max(target.getPoseAmbiguity(), 0.0);
+      count += 1;
+    }
+    this.tagCount = count;
+    this.averageTagDistance = count > 0 ? distance / count : 0.0;
+    this.averageAmbiguity = count > 0 ? ambiguity / count : 0.0;
+
+    // The tag count is accounted for only here, by the choice of base standard deviations.
+    double xyStdDev;
+    double thetaStdDev;
+    if (count > 1) {
+      xyStdDev = Constants.Vision.kMultiTagXYStdDev;
+      thetaStdDev = Constants.Vision.kMultiTagThetaStdDev;
+    } else {
+      xyStdDev = Constants.Vision.kSingleTagXYStdDev;
+      thetaStdDev = Constants.Vision.kSingleTagThetaStdDev;
+    }
+
+    double scale =
+      (1.0 + (averageTagDistance * averageTagDistance) / Constants.Vision.kStdDevDistanceScale)
+      * (1.0 + averageAmbiguity * Constants.Vision.kStdDevAmbiguityScale);
+
+    this.stdDevs = VecBuilder.fill(xyStdDev * scale, xyStdDev * scale, thetaStdDev * scale);
+  }
+}
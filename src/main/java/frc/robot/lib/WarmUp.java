@@ -0,0 +1,172 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import java.util.List;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+import frc.robot.Constants;
+
+/**
+ * Runs the drive math that autonomous depends on while the robot is disabled, so the JIT
+ * has compiled it before the match starts instead of during the first seconds of auto.
+ * Every stage works on its own objects and nothing is sent to the motors. The work is
+ * spread over disabled loops with a time budget per loop, and the time of each stage's
+ * first (cold) and last (warm) pass is logged when it finishes. The robot loop and drive
+ * times of the first few autonomous loops are logged too, along with whether warm-up had
+ * finished, so matches with and without warm-up can be compared.
+ */
+public class WarmUp {
+
+  private static final int kPasses = 5000;
+  private static final double kLoopBudget = 0.004;
+  private static final int kAutoLoopsLogged = 5;
+
+  private static final int kKinematics = 0;
+  private static final int kTrajectory = 1;
+  private static final int kController = 2;
+  private static final int kEstimator = 3;
+  private static final int kSetpointGenerator = 4;
+  private static final String[] kStageNames = {
+    "Kinematics", "Trajectory", "Controller", "Estimator", "SetpointGenerator"
+  };
+
+  private final List<PathPlannerTrajectory> m_trajectories;
+
+  // Kinematics caches module headings, so use a private one rather than the drive's.
+  private final SwerveDriveKinematics m_kinematics = new SwerveDriveKinematics(Constants.Drive.kModuleTranslations);
+  private final SwerveModuleStates m_moduleStates = new SwerveModuleStates(Constants.Drive.kModuleTranslations);
+  private final SwerveSetpointGenerator m_setpointGenerator = new SwerveSetpointGenerator(4);
+  private final PPHolonomicDriveController m_controller = new PPHolonomicDriveController(
+    new PIDController(Constants.Drive.kPathTranslationP, 0, 0),
+    new PIDController(Constants.Drive.kPathTranslationP, 0, 0),
+    new PIDController(Constants.Drive.kPathRotationP, 0, 0));
+  private final SwerveModulePosition[] m_positions = new SwerveModulePosition[] {
+    new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+  };
+  private final SwerveDrivePoseEstimator m_poseEstimator = new SwerveDrivePoseEstimator(
+    m_kinematics, new Rotation2d(), m_positions, new Pose2d());
+
+  private final long[] m_coldNanos = new long[kStageNames.length];
+  private final long[] m_warmNanos = new long[kStageNames.length];
+  private int m_pass = 0;
+  private int m_autoLoop = 0;
+
+  // Carried from one stage to the next so no stage's work can be optimized away.
+  private PathPlannerState m_state;
+  private ChassisSpeeds m_speeds = new ChassisSpeeds();
+
+  /**
+   * @param trajectories the autonomous trajectories to sample and follow.
+   */
+  public WarmUp(List<PathPlannerTrajectory> trajectories) {
+    m_trajectories = trajectories;
+  }
+
+  /** @return true once every pass has run. */
+  public boolean isFinished() {
+    return m_pass >= kPasses;
+  }
+
+  /** Runs passes until this loop's time budget is used. Call from disabledPeriodic. */
+  public void run() {
+    if (isFinished() || m_trajectories.isEmpty()) { return; }
+
+    long start = System.nanoTime();
+    while (!isFinished() && System.nanoTime() - start < kLoopBudget * 1e9) {
+      runPass();
+      m_pass += 1;
+    }
+
+    if (isFinished()) {
+      for (int i = 0; i < kStageNames.length; i += 1) {
+        Logger.log(String.format("Warm-up %s: cold %.3f ms, warm %.3f ms",
+          kStageNames[i], m_coldNanos[i] / 1e6, m_warmNanos[i] / 1e6));
+      }
+    }
+  }
+
+  /** Starts logging the first autonomous loops. Call from autonomousInit. */
+  public void startAutoLoopLog() {
+    m_autoLoop = 0;
+  }
+
+  /**
+   * Logs the time of the robot loop and the drive subsystem for the first autonomous
+   * loops. Call from autonomousPeriodic, which runs before robotPeriodic, so each call
+   * reports the loop before it and the first call is skipped.
+   */
+  public void logAutoLoop() {
+    m_autoLoop += 1;
+    if (m_autoLoop < 2 || m_autoLoop > kAutoLoopsLogged + 1) { return; }
+    LoopProfiler.Section drive = LoopProfiler.getSection("Drive");
+    Logger.log(String.format("Auto loop %d: robot %.2f ms, drive %.2f ms (warm-up %s)",
+      m_autoLoop - 1,
+      LoopProfiler.getLastLoopTime() * 1e3,
+      drive != null ? drive.getLoopTime() * 1e3 : Double.NaN,
+      isFinished() ? "finished" : "not finished, " + m_pass + " of " + kPasses + " passes"));
+  }
+
+  private void runPass() {
+    double t = m_pass * TimedRobot.kDefaultPeriod;
+
+    long stageStart = System.nanoTime();
+    m_moduleStates.fromFieldRelativeSpeeds(
+      m_speeds.vxMetersPerSecond, m_speeds.vyMetersPerSecond, m_speeds.omegaRadiansPerSecond,
+      t % (2 * Math.PI), TimedRobot.kDefaultPeriod);
+    m_moduleStates.desaturate(Constants.Drive.kMaxSpeedMetersPerSecond);
+    SwerveModuleState[] states = m_kinematics.toSwerveModuleStates(m_speeds);
+    m_speeds = m_kinematics.toChassisSpeeds(states);
+    stageStart = record(kKinematics, stageStart);
+
+    PathPlannerTrajectory trajectory = m_trajectories.get(m_pass % m_trajectories.size());
+    m_state = PathPlannerTrajectory.transformStateForAlliance(
+      (PathPlannerState)trajectory.sample(t % trajectory.getTotalTimeSeconds()),
+      m_pass % 2 == 0 ? Alliance.Blue : Alliance.Red);
+    stageStart = record(kTrajectory, stageStart);
+
+    m_speeds = m_controller.calculate(m_poseEstimator.getEstimatedPosition(), m_state);
+    stageStart = record(kController, stageStart);
+
+    for (int i = 0; i < m_positions.length; i += 1) {
+      m_positions[i].distanceMeters += m_moduleStates.speeds[i] * TimedRobot.kDefaultPeriod;
+      m_positions[i].angle = Rotation2d.fromRadians(m_moduleStates.angles[i]);
+    }
+    m_poseEstimator.updateWithTime(t, m_state.holonomicRotation, m_positions);
+    if (m_pass % 5 == 0) {
+      m_poseEstimator.addVisionMeasurement(m_state.poseMeters, t, VecBuilder.fill(0.5, 0.5, 2.0));
+    }
+    stageStart = record(kEstimator, stageStart);
+
+    m_setpointGenerator.generate(m_moduleStates, Constants.Drive.kTeleopSetpointLimits, TimedRobot.kDefaultPeriod);
+    record(kSetpointGenerator, stageStart);
+  }
+
+  /** Records the time since the stage started and returns the start of the next stage. */
+  private long record(int stage, long stageStart) {
+    long now = System.nanoTime();
+    if (m_pass == 0) {
+      m_coldNanos[stage] = now - stageStart;
+    }
+    m_warmNanos[stage] = now - stageStart;
+    return now;
+  }
+}
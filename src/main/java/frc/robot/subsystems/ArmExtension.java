@@ -12,17 +12,18 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkMaxPIDController;
 
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.lib.CachedSparkMax;
+import frc.robot.lib.Telemetry;
 
 public class ArmExtension extends SubsystemBase {
-  private final CANSparkMax m_extensionMotor;
+  private final CachedSparkMax m_extensionMotor;
   private final SparkMaxPIDController m_extensionPID;
   private final RelativeEncoder m_extensionMotorEncoder;
 
   public ArmExtension() {
-    m_extensionMotor = new CANSparkMax(Constants.Arm.kExtensionMotorId, MotorType.kBrushless);
+    m_extensionMotor = new CachedSparkMax("Arm/Extension", Constants.Arm.kExtensionMotorId, MotorType.kBrushless, Constants.CAN.kArmStatusFrames);
     m_extensionMotor.restoreFactoryDefaults();
     m_extensionMotor.setIdleMode(IdleMode.kBrake); 
     m_extensionMotor.enableSoftLimit(CANSparkMax.SoftLimitDirection.kForward, true);
@@ -43,13 +44,13 @@ public class ArmExtension extends SubsystemBase {
     m_extensionPID.setD(Constants.Arm.kExtensionD);
     m_extensionPID.setOutputRange(Constants.Arm.kExtensionMinOutput,
                                   Constants.Arm.kExtensionMaxOutput);
+    m_extensionMotor.applyStatusFrames();
 
+    Telemetry.addDouble("Arm/Extend/Position", m_extensionMotorEncoder::getPosition, 0.1, 0.01);
   }
 
   @Override
-  public void periodic() {
-    updateTelemetry();
-  }
+  public void periodic() {}
 
   /**
    * Extends or retracts the arm
@@ -63,11 +64,11 @@ public class ArmExtension extends SubsystemBase {
    * Sets the Extension position to given value.
    */
   public void setDesiredPosition(double position, double speed) {
-    m_extensionPID.setOutputRange(
+    m_extensionMotor.setOutputRange(
       Constants.Arm.kExtensionMinOutput * speed,
       Constants.Arm.kExtensionMaxOutput * speed
     );
-    m_extensionPID.setReference(position, CANSparkMax.ControlType.kPosition);
+    m_extensionMotor.setReference(position, CANSparkMax.ControlType.kPosition);
   }
 
   // In inches
@@ -118,8 +119,4 @@ public class ArmExtension extends SubsystemBase {
     builder.addDoubleProperty("Extend/Motor/Speed", m_extensionMotor::get, null);
     //builder.addBooleanProperty("Extend/IsSafe", this::isSafeToExtend, null);
   }
-
-  private void updateTelemetry() {
-    SmartDashboard.putNumber("Arm/Extend/Position", m_extensionMotorEncoder.getPosition());
-  }
 }
@@ -12,19 +12,20 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkMaxPIDController;
 
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import frc.robot.Constants;
+import frc.robot.lib.CachedSparkMax;
+import frc.robot.lib.Telemetry;
 
 public class ArmTilt extends SubsystemBase {
-  private final CANSparkMax m_tiltMotor;
+  private final CachedSparkMax m_tiltMotor;
   private final RelativeEncoder m_tiltMotorEncoder;
   private final SparkMaxPIDController m_tiltPID;
 
   public ArmTilt() {
 
-    m_tiltMotor = new CANSparkMax(Constants.Arm.kTiltMotorId, MotorType.kBrushless);
+    m_tiltMotor = new CachedSparkMax("Arm/Tilt", Constants.Arm.kTiltMotorId, MotorType.kBrushless, Constants.CAN.kArmStatusFrames);
     m_tiltMotor.restoreFactoryDefaults();
     m_tiltMotor.setIdleMode(IdleMode.kBrake);
     m_tiltMotor.enableSoftLimit(CANSparkMax.SoftLimitDirection.kForward, true);
@@ -43,13 +44,13 @@ public class ArmTilt extends SubsystemBase {
     m_tiltPID.setP(Constants.Arm.kTiltP);
     m_tiltPID.setOutputRange(Constants.Arm.kTiltMinOutput,
                              Constants.Arm.kTiltMaxOutput);
+    m_tiltMotor.applyStatusFrames();
 
+    Telemetry.addDouble("Arm/Tilt/Position", m_tiltMotorEncoder::getPosition, 0.1, 0.01);
   }
 
   @Override
-  public void periodic() {
-    updateTelemetry();
-  }
+  public void periodic() {}
 
   /**
    * Tilts the arm.
@@ -63,11 +64,11 @@ public class ArmTilt extends SubsystemBase {
    * Sets the Tilt position to given value
    */
   public void setDesiredPosition(double position, double speed) {
-    m_tiltPID.setOutputRange(
+    m_tiltMotor.setOutputRange(
       Constants.Arm.kTiltMinOutput * speed,
       Constants.Arm.kTiltMaxOutput * speed
     );
-    m_tiltPID.setReference(position, CANSparkMax.ControlType.kPosition);
+    m_tiltMotor.setReference(position, CANSparkMax.ControlType.kPosition);
   }
 
 
@@ -122,8 +123,4 @@ public class ArmTilt extends SubsystemBase {
     //builder.addBooleanProperty("Tilt/IsSafe", this::isSafeToTilt, null);
 
   }
-
-  private void updateTelemetry() {
-    SmartDashboard.putNumber("Arm/Tilt/Position", m_tiltMotorEncoder.getPosition());
-  }
 }
@@ -12,27 +12,30 @@ import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.lib.CachedSparkMax;
 
 public class Clamps extends SubsystemBase {
-  private final CANSparkMax m_left;
-  private final CANSparkMax m_right;
+  private final CachedSparkMax m_left;
+  private final CachedSparkMax m_right;
  
   public Clamps() {
-    m_left = new CANSparkMax(Constants.Clamps.kLeftClampCANId, MotorType.kBrushless);
+    m_left = new CachedSparkMax("Clamps/Left", Constants.Clamps.kLeftClampCANId, MotorType.kBrushless, Constants.CAN.kClampStatusFrames);
     m_left.setIdleMode(IdleMode.kBrake);
     m_left.setSmartCurrentLimit(Constants.Clamps.kCurrentLimit);
     
     m_left.enableSoftLimit(CANSparkMax.SoftLimitDirection.kForward, true);
     m_left.setSoftLimit(CANSparkMax.SoftLimitDirection.kForward,
                        Constants.Clamps.kReverseSoftLimit); 
+    m_left.applyStatusFrames();
 
-    m_right = new CANSparkMax(Constants.Clamps.kRightClampCANId, MotorType.kBrushless);
+    m_right = new CachedSparkMax("Clamps/Right", Constants.Clamps.kRightClampCANId, MotorType.kBrushless, Constants.CAN.kClampStatusFrames);
     m_right.setIdleMode(IdleMode.kBrake);
     m_right.setSmartCurrentLimit(Constants.Clamps.kCurrentLimit);
     
     m_right.enableSoftLimit(CANSparkMax.SoftLimitDirection.kReverse, true);
     m_right.setSoftLimit(CANSparkMax.SoftLimitDirection.kReverse,
                        Constants.Clamps.kReverseSoftLimit);
+    m_right.applyStatusFrames();
   }
 
   @Override
@@ -7,30 +7,42 @@ package frc.robot.subsystems;
 
 import java.util.Optional;
 
-import org.photonvision.EstimatedRobotPose;
-import org.photonvision.PhotonCamera;
 import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 
-import edu.wpi.first.apriltag.AprilTagFieldLayout.OriginPosition;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotState;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.lib.Logger;
+import frc.robot.lib.LoopProfiler;
 import frc.robot.lib.NavX;
+import frc.robot.lib.OdometrySampler;
 import frc.robot.lib.PhotonCameraWrapper;
+import frc.robot.lib.PoseHistory;
 import frc.robot.lib.SwerveModule;
+import frc.robot.lib.SwerveModuleStates;
+import frc.robot.lib.SwerveSetpointGenerator;
+import frc.robot.lib.Telemetry;
+import frc.robot.lib.VisionFilter;
+import frc.robot.lib.VisionMeasurement;
 
 public class Drive extends SubsystemBase {
 
@@ -39,6 +51,8 @@ public class Drive extends SubsystemBase {
     ROBOT_CENTRIC
   }
 
+  private final LoopProfiler.Section m_loopTimer = LoopProfiler.section("Drive");
+
   private final SwerveModule m_frontLeft = new SwerveModule(
     SwerveModule.Location.FrontLeft,
     Constants.Drive.kFrontLeftDrivingCanId,
@@ -63,12 +77,67 @@ public class Drive extends SubsystemBase {
     Constants.Drive.kRearRightTurningCanId, 
     Constants.Drive.kRearRightChassisAngularOffset);
 
+  private final SwerveModule[] m_modules = new SwerveModule[] {
+    m_frontLeft, m_frontRight, m_rearLeft, m_rearRight
+  };
+
   private final NavX m_gyro = new NavX();
+
+  private final OdometrySampler m_odometrySampler = new OdometrySampler(
+    m_gyro,
+    m_modules,
+    Constants.Drive.kOdometryBufferSize);
+
+  private final SwerveModulePosition[] m_odometryPositions = new SwerveModulePosition[] {
+    new SwerveModulePosition(),
+    new SwerveModulePosition(),
+    new SwerveModulePosition(),
+    new SwerveModulePosition()
+  };
+  private final OdometrySampler.Consumer m_odometryConsumer = this::addOdometrySample;
+  private Rotation2d m_odometryYaw = new Rotation2d();
+
+  // Reused every loop so the drive path does not allocate.
+  private final SwerveModuleStates m_moduleStates = new SwerveModuleStates(Constants.Drive.kModuleTranslations);
+  private final SwerveSetpointGenerator m_setpointGenerator = new SwerveSetpointGenerator(4);
+  private SwerveSetpointGenerator.Limits m_setpointLimits = null;
+  private double m_lastSetpointTimestamp = 0.0;
+  private double m_lastDriveTimestamp = 0.0;
+  private final SwerveModulePosition[] m_resetPositions = new SwerveModulePosition[] {
+    new SwerveModulePosition(),
+    new SwerveModulePosition(),
+    new SwerveModulePosition(),
+    new SwerveModulePosition()
+  };
   
   private SwerveDriveMode m_swerveDriveMode = SwerveDriveMode.FIELD_CENTRIC;
-
-  public PhotonCameraWrapper m_leftPhotonCamera;
-  public PhotonCameraWrapper m_rightPhotonCamera;
+  private boolean m_isSkewCompensationEnabled = Constants.Drive.kUseSkewCompensation;
+
+  // A plain PID controller, since a profiled one allocates its profile every loop. The
+  // output is clamped, and acceleration is limited downstream by the setpoint generator.
+  private final PIDController m_headingController = new PIDController(
+    Constants.Drive.kHeadingP,
+    Constants.Drive.kHeadingI,
+    Constants.Drive.kHeadingD);
+  private boolean m_isHeadingHoldEnabled = Constants.Drive.kUseHeadingHold;
+  private boolean m_isHeadingLatched = false;
+  private double m_headingTarget = 0.0; // radians
+
+  public final PhotonCameraWrapper m_leftPhotonCamera = new PhotonCameraWrapper(
+    Constants.Vision.kLeftCameraName,
+    Constants.Vision.kLeftRobotToCamera,
+    PoseStrategy.MULTI_TAG_PNP,
+    Constants.Vision.kBlueAprilTagFieldLayout,
+    Constants.Vision.kRedAprilTagFieldLayout);
+
+  public final PhotonCameraWrapper m_rightPhotonCamera = new PhotonCameraWrapper(
+    Constants.Vision.kRightCameraName,
+    Constants.Vision.kRightRobotToCamera,
+    PoseStrategy.MULTI_TAG_PNP,
+    Constants.Vision.kBlueAprilTagFieldLayout,
+    Constants.Vision.kRedAprilTagFieldLayout);
+
+  private Alliance m_alliance = Alliance.Invalid;
 
   private final SwerveDrivePoseEstimator m_poseEstimator = 
     new SwerveDrivePoseEstimator(
@@ -81,53 +150,69 @@ public class Drive extends SubsystemBase {
         m_rearRight.getPosition()}, 
       new Pose2d());
 
+  private final PoseHistory m_poseHistory = new PoseHistory(Constants.Drive.kPoseHistorySize);
+  private final double[] m_poseAt = new double[3];
+
+  private final VisionFilter m_visionFilter = new VisionFilter(
+    Constants.Vision.kFilterThresholds,
+    Constants.Vision.kInnovationBucketWidth,
+    Constants.Vision.kInnovationBucketCount);
+
+  private boolean m_isAutoVisionEnabled = false;
+
+  // Wheels and gyro only, so the effect of vision on autonomous paths can be measured.
+  private final SwerveDriveOdometry m_wheelOdometry =
+    new SwerveDriveOdometry(
+      Constants.Drive.kDriveKinematics,
+      Rotation2d.fromDegrees(m_gyro.getAngle()),
+      new SwerveModulePosition[] {
+        m_frontLeft.getPosition(),
+        m_frontRight.getPosition(),
+        m_rearLeft.getPosition(),
+        m_rearRight.getPosition()});
+
+  private final DoubleLogEntry m_logPathEndError =
+    new DoubleLogEntry(DataLogManager.getLog(), "drive/Auto/PathEndError");
+  private final DoubleLogEntry m_logPathEndWheelError =
+    new DoubleLogEntry(DataLogManager.getLog(), "drive/Auto/PathEndWheelError");
+
+  private double m_visionLatency = 0.0;
+  private final DoubleLogEntry m_logVisionLatency =
+    new DoubleLogEntry(DataLogManager.getLog(), "drive/Vision/Latency");
+
   private final Field2d m_field = new Field2d();
+  private final double[] m_poseTelemetry = new double[3];
 
   public Drive() {
     SmartDashboard.putData("Field", m_field);
+    m_headingController.enableContinuousInput(-Math.PI, Math.PI);
+    registerTelemetry();
+    m_odometrySampler.start(Constants.Drive.kOdometryFrequency);
   }
 
   @Override
   public void periodic() {
-    initializePhotonCameras();
+    m_loopTimer.start();
     updatePose();
-    updateTelemetry();
     if (LiveWindow.isEnabled()) {
       updateField();
     }
     sampleModules();
+    m_loopTimer.stop();
   }
   
-  private void initializePhotonCameras() {
-    if (m_leftPhotonCamera != null) { return; }
-
-    Alliance allience = DriverStation.getAlliance();
-
-    if (allience != Alliance.Invalid) {
-      Constants.Vision.kAprilTagFieldLayout.setOrigin(
-        allience == Alliance.Red 
-          ? OriginPosition.kRedAllianceWallRightSide
-          : OriginPosition.kBlueAllianceWallRightSide);
-
-      m_leftPhotonCamera = new PhotonCameraWrapper(
-        Constants.Vision.kLeftCameraName,
-        Constants.Vision.kLeftRobotToCamera,
-        PoseStrategy.MULTI_TAG_PNP,
-        Constants.Vision.kAprilTagFieldLayout
-      );
-
-      m_rightPhotonCamera = new PhotonCameraWrapper(
-        Constants.Vision.kRightCameraName,
-        Constants.Vision.kRightRobotToCamera,
-        PoseStrategy.MULTI_TAG_PNP,
-        Constants.Vision.kAprilTagFieldLayout
-      );  
-    }
-  }
-
-  public void resetPhotonCameras() {
-    m_leftPhotonCamera = null;
-    m_rightPhotonCamera = null;
+  /**
+   * Points both cameras at the field layout for the current alliance if it has changed.
+   * Called while disabled and when the robot is enabled, never mid-mode.
+   */
+  public void updateAlliance() {
+    Alliance alliance = DriverStation.getAlliance();
+    if (alliance == m_alliance) { return; }
+
+    m_alliance = alliance;
+    m_leftPhotonCamera.setAlliance(alliance);
+    m_rightPhotonCamera.setAlliance(alliance);
+    Logger.log("Vision field layout set for alliance " + alliance);
   }
 
   private void sampleModules(){
@@ -145,30 +230,78 @@ public class Drive extends SubsystemBase {
   }
 
   public void updatePose() {
-    m_poseEstimator.update(
-      m_gyro.getRotation2d(), 
-      new SwerveModulePosition[] {
-        m_frontLeft.getPosition(),
-        m_frontRight.getPosition(),
-        m_rearLeft.getPosition(),
-        m_rearRight.getPosition()
-    });
+    m_odometrySampler.drain(m_odometryConsumer);
     
-    if (m_leftPhotonCamera != null && m_rightPhotonCamera != null) {
-      if (!RobotState.isAutonomous()) {
-        Optional<EstimatedRobotPose> leftCameraResult = m_leftPhotonCamera.getEstimatedGlobalPose(m_poseEstimator.getEstimatedPosition());
-        if (leftCameraResult.isPresent()) {
-          EstimatedRobotPose camPose = leftCameraResult.get();
-          m_poseEstimator.addVisionMeasurement(camPose.estimatedPose.toPose2d(), camPose.timestampSeconds);
-        } else {
-          Optional<EstimatedRobotPose> rightCameraResult = m_rightPhotonCamera.getEstimatedGlobalPose(m_poseEstimator.getEstimatedPosition());
-          if (rightCameraResult.isPresent()) {
-            EstimatedRobotPose camPose = rightCameraResult.get();
-            m_poseEstimator.addVisionMeasurement(camPose.estimatedPose.toPose2d(), camPose.timestampSeconds);
-          }
+    Pose2d pose = m_poseEstimator.getEstimatedPosition();
+    m_leftPhotonCamera.setReferencePose(pose);
+    m_rightPhotonCamera.setReferencePose(pose);
+
+    m_visionFilter.setThresholds(
+      RobotState.isAutonomous()
+        ? Constants.Vision.kAutoFilterThresholds
+        : Constants.Vision.kFilterThresholds);
+
+    // Both cameras are applied every loop; each measurement carries its own trust.
+    pollPhotonCamera(m_leftPhotonCamera);
+    pollPhotonCamera(m_rightPhotonCamera);
+  }
+
+  private void pollPhotonCamera(PhotonCameraWrapper camera) {
+    VisionMeasurement measurement;
+    while ((measurement = camera.poll()) != null) {
+      if (!RobotState.isAutonomous() || m_isAutoVisionEnabled) {
+        double[] odometryPose = m_poseHistory.sample(measurement.timestampSeconds, m_poseAt) ? m_poseAt : null;
+        if (m_visionFilter.check(measurement, odometryPose) == VisionFilter.Result.ACCEPTED) {
+          addVisionMeasurement(measurement);
         }
       }
-    }  
+    }
+  }
+
+  /**
+   * Feeds one sample from the odometry thread into the pose estimator at the time it
+   * was taken, rather than at the time the main loop got around to it.
+   */
+  private void addOdometrySample(double timestamp, double yawDegrees, double[] distances, double[] angles) {
+    OdometrySampler.copyPositions(distances, angles, m_odometryPositions);
+    if (m_odometryYaw.getDegrees() != yawDegrees) {
+      m_odometryYaw = Rotation2d.fromDegrees(yawDegrees);
+    }
+    Pose2d pose = m_poseEstimator.updateWithTime(timestamp, m_odometryYaw, m_odometryPositions);
+    m_wheelOdometry.update(m_odometryYaw, m_odometryPositions);
+    m_poseHistory.add(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+  }
+
+  private void addVisionMeasurement(VisionMeasurement measurement) {
+    m_visionLatency = Timer.getFPGATimestamp() - measurement.timestampSeconds;
+    m_logVisionLatency.append(m_visionLatency);
+    m_poseEstimator.addVisionMeasurement(measurement.pose, measurement.timestampSeconds, measurement.stdDevs);
+  }
+
+  /**
+   * Looks up where the robot was at a past point in time, interpolating between odometry
+   * samples. This does not allocate.
+   *
+   * @param timestamp FPGA timestamp in seconds.
+   * @param pose receives x (meters), y (meters) and heading (radians); at least 3 long.
+   * @return true if a pose was found, false if no history has been recorded yet.
+   */
+  public boolean getPoseAt(double timestamp, double[] pose) {
+    return m_poseHistory.sample(timestamp, pose);
+  }
+
+  /**
+   * Looks up where the robot was at a past point in time, interpolating between odometry
+   * samples.
+   *
+   * @param timestamp FPGA timestamp in seconds.
+   * @return the pose at that time, or empty if no history has been recorded yet.
+   */
+  public Optional<Pose2d> getPoseAt(double timestamp) {
+    if (!m_poseHistory.sample(timestamp, m_poseAt)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Pose2d(m_poseAt[0], m_poseAt[1], new Rotation2d(m_poseAt[2])));
   }
 
   /**
@@ -186,15 +319,48 @@ public class Drive extends SubsystemBase {
    * @param pose The pose to which to set the odometry.
    */
   public void resetPose(Pose2d pose) {
-    m_poseEstimator.resetPosition(
-        Rotation2d.fromDegrees(m_gyro.getAngle()),
-        new SwerveModulePosition[] {
-            m_frontLeft.getPosition(),
-            m_frontRight.getPosition(),
-            m_rearLeft.getPosition(),
-            m_rearRight.getPosition()
-        },
-        pose);
+    // Samples taken before the reset would otherwise be applied on top of the new pose.
+    m_odometrySampler.clear();
+    m_poseHistory.clear();
+    for (int i = 0; i < m_modules.length; i += 1) {
+      m_modules[i].updatePosition(m_resetPositions[i]);
+    }
+    Rotation2d gyroAngle = Rotation2d.fromDegrees(m_gyro.getAngle());
+    m_poseEstimator.resetPosition(gyroAngle, m_resetPositions, pose);
+    m_wheelOdometry.resetPosition(gyroAngle, m_resetPositions, pose);
+  }
+
+  /**
+   * Chooses whether vision measurements are used during autonomous. They are always
+   * used in teleop. Autonomous measurements go through a stricter filter.
+   *
+   * @param isEnabled true to use vision during autonomous.
+   */
+  public void setAutoVisionEnabled(boolean isEnabled) {
+    m_isAutoVisionEnabled = isEnabled;
+  }
+
+  /** @return true if vision measurements are used during autonomous. */
+  public boolean isAutoVisionEnabled() {
+    return m_isAutoVisionEnabled;
+  }
+
+  /**
+   * Logs how far the robot ended from the end of a path, both for the estimated pose
+   * and for the pose from wheels and gyro alone.
+   *
+   * @param target the pose at the end of the path.
+   */
+  public void logPathEndError(Pose2d target) {
+    double error = getPose().getTranslation().getDistance(target.getTranslation());
+    double wheelError = m_wheelOdometry.getPoseMeters().getTranslation().getDistance(target.getTranslation());
+    m_logPathEndError.append(error);
+    m_logPathEndWheelError.append(wheelError);
+    Logger.log(String.format(
+      "Path end error: %.3f m estimated (vision %s), %.3f m wheels only",
+      error,
+      m_isAutoVisionEnabled ? "on" : "off",
+      wheelError));
   }
 
   /**
@@ -212,20 +378,180 @@ public class Drive extends SubsystemBase {
     // ySpeed *= Constants.Drive.kMaxSpeedMetersPerSecond;
     // rot *= Constants.Drive.kMaxAngularSpeed;
 
-    var swerveModuleStates = Constants.Drive.kDriveKinematics.toSwerveModuleStates(
-        (m_swerveDriveMode == SwerveDriveMode.FIELD_CENTRIC)
-            ? ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, rot, Rotation2d.fromDegrees(m_gyro.getAngle()))
-            : new ChassisSpeeds(xSpeed, ySpeed, rot));
-    SwerveDriveKinematics.desaturateWheelSpeeds(
-        swerveModuleStates, Constants.Drive.kMaxSpeedMetersPerSecond);
-    m_frontLeft.setDesiredState(swerveModuleStates[0]);
-    m_frontRight.setDesiredState(swerveModuleStates[1]);
-    m_rearLeft.setDesiredState(swerveModuleStates[2]);
-    m_rearRight.setDesiredState(swerveModuleStates[3]);
+    if (m_swerveDriveMode == SwerveDriveMode.FIELD_CENTRIC) {
+      rot = holdHeading(rot);
+      double heading = m_gyro.getAngle();
+      if (m_isSkewCompensationEnabled) {
+        heading += m_gyro.getRate() * Constants.Drive.kSkewCompensationLookahead;
+        m_moduleStates.fromFieldRelativeSpeeds(xSpeed, ySpeed, rot, Math.toRadians(heading), getDrivePeriod());
+      } else {
+        m_moduleStates.fromFieldRelativeSpeeds(xSpeed, ySpeed, rot, Math.toRadians(heading));
+      }
+    } else {
+      setRobotRelativeSpeeds(xSpeed, ySpeed, rot);
+      return;
+    }
+    m_moduleStates.desaturate(Constants.Drive.kMaxSpeedMetersPerSecond);
+    applyModuleStates();
+  }
+
+  /**
+   * Holds the latched heading while there is no rotation input. Rotation input clears the
+   * latch, and a new heading is latched once the robot has stopped turning, so the robot
+   * does not snap back to where it was when the stick was released.
+   *
+   * @param rot the requested angular rate in radians per second.
+   * @return the angular rate to command.
+   */
+  private double holdHeading(double rot) {
+    if (rot != 0.0 || !m_isHeadingHoldEnabled) {
+      m_isHeadingLatched = false;
+      return rot;
+    }
+
+    double heading = MathUtil.angleModulus(Math.toRadians(m_gyro.getAngle()));
+    if (!m_isHeadingLatched) {
+      if (Math.abs(m_gyro.getRate()) > Constants.Drive.kHeadingLatchRate) {
+        return 0.0;
+      }
+      latchHeading(heading);
+    }
+    return MathUtil.clamp(
+      m_headingController.calculate(heading, m_headingTarget),
+      -Constants.Drive.kHeadingMaxVelocity,
+      Constants.Drive.kHeadingMaxVelocity);
+  }
+
+  private void latchHeading(double target) {
+    m_headingController.reset();
+    m_headingTarget = target;
+    m_isHeadingLatched = true;
+  }
+
+  /**
+   * Turns the robot to a field-centric heading and holds it until the driver rotates.
+   *
+   * @param degrees the heading in degrees, counterclockwise from the opposing alliance wall.
+   */
+  public void snapToHeading(double degrees) {
+    latchHeading(MathUtil.angleModulus(Math.toRadians(degrees)));
+  }
+
+  /** Forgets the held heading, so the next heading is latched from where the robot is. */
+  public void clearHeadingTarget() {
+    m_isHeadingLatched = false;
+  }
+
+  /**
+   * Chooses whether the heading is held when there is no rotation input.
+   *
+   * @param isEnabled true to hold the heading.
+   */
+  public void setHeadingHoldEnabled(boolean isEnabled) {
+    m_isHeadingHoldEnabled = isEnabled;
+    m_isHeadingLatched = false;
+  }
+
+  /**
+   * Drives the robot at robot-relative chassis speeds, as output by a trajectory
+   * follower.
+   *
+   * @param chassisSpeeds the desired robot-relative speeds.
+   */
+  public void setChassisSpeeds(ChassisSpeeds chassisSpeeds) {
+    setRobotRelativeSpeeds(
+      chassisSpeeds.vxMetersPerSecond,
+      chassisSpeeds.vyMetersPerSecond,
+      chassisSpeeds.omegaRadiansPerSecond);
+  }
+
+  private void setRobotRelativeSpeeds(double xSpeed, double ySpeed, double rot) {
+    if (m_isSkewCompensationEnabled) {
+      m_moduleStates.fromChassisSpeeds(xSpeed, ySpeed, rot, getDrivePeriod());
+    } else {
+      m_moduleStates.fromChassisSpeeds(xSpeed, ySpeed, rot);
+    }
+    m_moduleStates.desaturate(Constants.Drive.kMaxSpeedMetersPerSecond);
+    applyModuleStates();
+  }
+
+  /**
+   * @return how long the speeds commanded now will be held, taken to be the measured time
+   *     since the last drive call. A long gap (e.g. the first loop after being disabled)
+   *     falls back to the nominal loop period, like the setpoint generator's dt clamp.
+   */
+  private double getDrivePeriod() {
+    double timestamp = Timer.getFPGATimestamp();
+    double dt = timestamp - m_lastDriveTimestamp;
+    m_lastDriveTimestamp = timestamp;
+    return dt > 0.0 && dt <= 0.1 ? dt : TimedRobot.kDefaultPeriod;
+  }
+
+  /**
+   * Chooses whether chassis speeds are compensated for the sideways drift of rotating
+   * while translating over one loop.
+   *
+   * @param isEnabled true to compensate.
+   */
+  public void setSkewCompensationEnabled(boolean isEnabled) {
+    m_isSkewCompensationEnabled = isEnabled;
+  }
+
+  /**
+   * Limits how quickly the module states can change, or removes the limits.
+   *
+   * @param limits the module acceleration and steering limits, or null to send target
+   *     states straight to the modules.
+   */
+  public void setSetpointLimits(SwerveSetpointGenerator.Limits limits) {
+    if (limits != null) {
+      // Always start from what the modules are actually doing, never from a setpoint left
+      // over from before the robot was disabled or another command drove.
+      for (int i = 0; i < m_modules.length; i += 1) {
+        m_moduleStates.set(i, m_modules[i].getDrivingVelocity(), m_modules[i].getAngleRadians());
+      }
+      m_setpointGenerator.reset(m_moduleStates.speeds, m_moduleStates.angles);
+      m_lastSetpointTimestamp = Timer.getFPGATimestamp();
+    }
+    m_setpointLimits = limits;
+  }
+
+  /**
+   * Stops the modules immediately, bypassing the setpoint limits, and leaves the
+   * setpoint generator at rest so later limited motion starts from zero.
+   */
+  public void stop() {
+    for (int i = 0; i < m_modules.length; i += 1) {
+      m_moduleStates.set(i, 0.0, m_modules[i].getDesiredAngle());
+    }
+    sendModuleStates();
+    m_setpointGenerator.reset(m_moduleStates.speeds, m_moduleStates.angles);
+  }
+
+  /**
+   * Sends the contents of the module state buffer to the swerve modules, first passing
+   * it through the setpoint generator if limits are set.
+   */
+  private void applyModuleStates() {
+    if (m_setpointLimits != null) {
+      double timestamp = Timer.getFPGATimestamp();
+      // A long gap (e.g. after being disabled) should not allow one huge step.
+      double dt = MathUtil.clamp(timestamp - m_lastSetpointTimestamp, 0.0, 0.1);
+      m_lastSetpointTimestamp = timestamp;
+      m_setpointGenerator.generate(m_moduleStates, m_setpointLimits, dt);
+    }
+    sendModuleStates();
+  }
+
+  private void sendModuleStates() {
+    for (int i = 0; i < m_modules.length; i += 1) {
+      m_modules[i].setDesiredState(m_moduleStates.speeds[i], m_moduleStates.angles[i]);
+    }
   }
 
   public void setDriveMode(SwerveDriveMode driveMode) {
     m_swerveDriveMode = driveMode;
+    m_isHeadingLatched = false;
     SmartDashboard.putString("Drive/Swerve/Mode", m_swerveDriveMode.toString());
   }
 
@@ -233,10 +559,13 @@ public class Drive extends SubsystemBase {
    * Sets the wheels into an X formation to prevent movement.
    */
   public void setX() {
-    m_frontLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
-    m_frontRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
-    m_rearLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
-    m_rearRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
+    m_moduleStates.set(0, 0, Math.toRadians(45));
+    m_moduleStates.set(1, 0, Math.toRadians(-45));
+    m_moduleStates.set(2, 0, Math.toRadians(-45));
+    m_moduleStates.set(3, 0, Math.toRadians(45));
+    // Lock immediately, and start any later limited motion from the locked angles.
+    sendModuleStates();
+    m_setpointGenerator.reset(m_moduleStates.speeds, m_moduleStates.angles);
   }
 
   /**
@@ -245,11 +574,11 @@ public class Drive extends SubsystemBase {
    * @param desiredStates The desired SwerveModule states.
    */
   public void setModuleStates(SwerveModuleState[] desiredStates) {
-    SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, Constants.Drive.kMaxSpeedMetersPerSecond);
-    m_frontLeft.setDesiredState(desiredStates[0]);
-    m_frontRight.setDesiredState(desiredStates[1]);
-    m_rearLeft.setDesiredState(desiredStates[2]);
-    m_rearRight.setDesiredState(desiredStates[3]);
+    for (int i = 0; i < m_modules.length; i += 1) {
+      m_moduleStates.set(i, desiredStates[i].speedMetersPerSecond, desiredStates[i].angle.getRadians());
+    }
+    m_moduleStates.desaturate(Constants.Drive.kMaxSpeedMetersPerSecond);
+    applyModuleStates();
   }
 
   /** Resets the drive encoders to currently read a position of 0. */
@@ -263,6 +592,7 @@ public class Drive extends SubsystemBase {
   /** Zeroes the heading of the robot. */
   public void zeroHeading() {
     m_gyro.reset();
+    m_isHeadingLatched = false;
   }
 
   /**
@@ -297,9 +627,39 @@ public class Drive extends SubsystemBase {
     builder.addDoubleProperty("TurnRate", this::getTurnRate, null);
   }
 
-  private void updateTelemetry() {
+  /** Declares the drive telemetry once; Telemetry publishes it on its own schedule. */
+  private void registerTelemetry() {
+    Telemetry.addDoubleArray("Drive/Pose", this::getPoseTelemetry, 0.02, 0.001);
+    Telemetry.addDouble("Drive/Odometry/SampleRate", m_odometrySampler::getSampleRate, 0.5, 1.0);
+    Telemetry.addDouble("Drive/Odometry/DroppedSamples", m_odometrySampler::getDroppedCount, 0.5);
+    Telemetry.addDouble("Drive/Odometry/MaxPeriod", m_odometrySampler::getMaxPeriod, 0.5);
+    Telemetry.addDouble("Drive/Odometry/SamplesPerLoop", m_odometrySampler::getLastDrainCount, 0.5);
+    Telemetry.addDouble("Drive/Vision/Latency", () -> m_visionLatency, 0.1, 0.001);
+    registerCameraTelemetry(m_leftPhotonCamera);
+    registerCameraTelemetry(m_rightPhotonCamera);
+  }
+
+  private void registerCameraTelemetry(PhotonCameraWrapper camera) {
+    String key = "Drive/Vision/" + camera.getName() + "/";
+    Telemetry.addDouble(key + "ProcessingTime", camera::getProcessingTime, 0.25, 0.001);
+    Telemetry.addDouble(key + "MaxProcessingTime", camera::getMaxProcessingTime, 0.25);
+    Telemetry.addDouble(key + "QueueDepth", camera::getQueueDepth, 0.25);
+    Telemetry.addDouble(key + "DroppedResults", camera::getDroppedCount, 0.25);
+
+    VisionFilter.Statistics statistics = m_visionFilter.getStatistics(camera.getName());
+    for (VisionFilter.Result result : VisionFilter.Result.values()) {
+      Telemetry.addDouble(key + "Results/" + result, () -> statistics.getCount(result), 0.25);
+    }
+    Telemetry.addDouble(key + "Rejected", statistics::getRejectedCount, 0.25);
+    Telemetry.addDoubleArray(key + "InnovationHistogram", statistics::getInnovationHistogram, 1.0, 0.0);
+  }
+
+  private double[] getPoseTelemetry() {
     Pose2d pose = m_poseEstimator.getEstimatedPosition();
-    SmartDashboard.putNumberArray("Drive/Pose",  new double[] { pose.getX(), pose.getY(), pose.getRotation().getDegrees() });
+    m_poseTelemetry[0] = pose.getX();
+    m_poseTelemetry[1] = pose.getY();
+    m_poseTelemetry[2] = pose.getRotation().getDegrees();
+    return m_poseTelemetry;
   }
 
   private void updateField() {
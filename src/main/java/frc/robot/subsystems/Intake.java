@@ -5,7 +5,6 @@
 
 package frc.robot.subsystems;
 
-import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 import com.revrobotics.ColorMatch;
 import com.revrobotics.ColorMatchResult;
@@ -19,10 +18,13 @@ import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import frc.robot.Constants;
+import frc.robot.lib.CachedSparkMax;
+import frc.robot.lib.LoopProfiler;
 
 public class Intake extends SubsystemBase {
-  private final CANSparkMax m_rollers;
-  private final CANSparkMax m_intakeArmMotor;
+  private final LoopProfiler.Section m_loopTimer = LoopProfiler.section("Intake");
+  private final CachedSparkMax m_rollers;
+  private final CachedSparkMax m_intakeArmMotor;
   private ColorSensorV3 m_colorSensor;
   private final ColorMatch m_colorMatcher;
   private boolean m_pieceIsCube;
@@ -31,17 +33,19 @@ public class Intake extends SubsystemBase {
   public boolean m_isExtended = true;
   
   public Intake() {
-    m_rollers = new CANSparkMax(Constants.Intake.kIntakeRollersCANId, MotorType.kBrushless);
+    m_rollers = new CachedSparkMax("Intake/Rollers", Constants.Intake.kIntakeRollersCANId, MotorType.kBrushless, Constants.CAN.kIntakeStatusFrames);
     m_rollers.restoreFactoryDefaults();
     m_rollers.setInverted(false);
     m_rollers.setIdleMode(IdleMode.kBrake);
     m_rollers.setSmartCurrentLimit(Constants.Intake.kCurrentLimit);
+    m_rollers.applyStatusFrames();
 
-    m_intakeArmMotor = new CANSparkMax(Constants.Intake.kIntakeArmCANId, MotorType.kBrushless);
+    m_intakeArmMotor = new CachedSparkMax("Intake/Arm", Constants.Intake.kIntakeArmCANId, MotorType.kBrushless, Constants.CAN.kIntakeStatusFrames);
     m_intakeArmMotor.restoreFactoryDefaults();
     m_intakeArmMotor.setInverted(false);
     m_intakeArmMotor.setIdleMode(IdleMode.kBrake);
     m_intakeArmMotor.setSmartCurrentLimit(Constants.Intake.kCurrentLimit);
+    m_intakeArmMotor.applyStatusFrames();
 
     m_colorSensor = new ColorSensorV3(Port.kMXP);
 
@@ -94,6 +98,7 @@ public class Intake extends SubsystemBase {
 
   @Override
   public void periodic() {
+    m_loopTimer.start();
     Color detectedColor;
     int distance;
 
@@ -129,6 +134,7 @@ public class Intake extends SubsystemBase {
     }
 
     updateTelemetry();
+    m_loopTimer.stop();
   }
 
   public boolean isExtended () {
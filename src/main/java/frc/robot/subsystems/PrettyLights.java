@@ -12,6 +12,8 @@ import edu.wpi.first.wpilibj.AddressableLEDBuffer;
 import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
+import frc.robot.lib.LoopProfiler;
+
 public class PrettyLights extends SubsystemBase {
 
   public static enum PanelLocation {
@@ -42,6 +44,7 @@ public class PrettyLights extends SubsystemBase {
     public int getColor() { return color; }
   }
 
+  private final LoopProfiler.Section m_loopTimer = LoopProfiler.section("PrettyLights");
   private final AddressableLED m_led;
   private final AddressableLEDBuffer m_ledBuffer;
   private boolean m_isBufferUpdated = false;
@@ -56,10 +59,12 @@ public class PrettyLights extends SubsystemBase {
 
   @Override
   public void periodic() {
+    m_loopTimer.start();
     if (m_isBufferUpdated) {
       m_led.setData(m_ledBuffer);
       m_isBufferUpdated = false;
     }
+    m_loopTimer.stop();
   }
 
   private void setShape(int[] shape, PanelLocation panel) {
@@ -5,7 +5,6 @@
 
 package frc.robot.subsystems;
 
-import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 
@@ -17,15 +16,21 @@ import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.lib.CachedSparkMax;
+import frc.robot.lib.LoopProfiler;
+import frc.robot.lib.Telemetry;
+import frc.robot.lib.TunableParameter;
 import frc.robot.lib.Utils;
 
 public class Suction extends SubsystemBase {
+  private final LoopProfiler.Section m_loopTimer = LoopProfiler.section("Suction");
   private final AnalogInput m_AnalogInputPressureBottom;
   private final AnalogInput m_AnalogInputPressureTop;
-  private final CANSparkMax m_motorBottom;
-  private final CANSparkMax m_motorTop;
+  private final CachedSparkMax m_motorBottom;
+  private final CachedSparkMax m_motorTop;
   private final Solenoid m_solenoidBottom;
   private final Solenoid m_solenoidTop;
+  private boolean m_isSolenoidOpen = false;
   private boolean m_isEnabled = false;
   private boolean m_isDisabling = false;
   private boolean m_isTargetPressureBottomReached = false;
@@ -33,65 +38,76 @@ public class Suction extends SubsystemBase {
   private double m_currentPressureBottom = 0;
   private double m_currentPressureTop = 0;
 
+  private final TunableParameter m_minimumPressureBottom =
+    new TunableParameter("Suction/Bottom/Pressure/Minimum", Constants.Suction.kMinimumPressureBottom);
+  private final TunableParameter m_targetPressureBottom =
+    new TunableParameter("Suction/Bottom/Pressure/Target", Constants.Suction.kTargetPressureBottom);
+  private final TunableParameter m_minimumPressureTop =
+    new TunableParameter("Suction/Top/Pressure/Minimum", Constants.Suction.kMinimumPressureTop);
+  private final TunableParameter m_targetPressureTop =
+    new TunableParameter("Suction/Top/Pressure/Target", Constants.Suction.kTargetPressureTop);
+
   public Suction() {
     m_AnalogInputPressureBottom = new AnalogInput(Constants.Suction.kPressureSensorBottomId);
     m_AnalogInputPressureTop = new AnalogInput(Constants.Suction.kPressureSensorTopId);
 
-    m_motorBottom = new CANSparkMax(Constants.Suction.kMotorBottomId, MotorType.kBrushless);
+    m_motorBottom = new CachedSparkMax("Suction/Bottom", Constants.Suction.kMotorBottomId, MotorType.kBrushless, Constants.CAN.kSuctionStatusFrames);
     m_motorBottom.restoreFactoryDefaults();
     m_motorBottom.setInverted(false);
     m_motorBottom.setIdleMode(IdleMode.kBrake);
     m_motorBottom.setSmartCurrentLimit(Constants.Suction.kCurrentLimit);
+    m_motorBottom.applyStatusFrames();
 
-    m_motorTop = new CANSparkMax(Constants.Suction.kMotorTopId, MotorType.kBrushless);
+    m_motorTop = new CachedSparkMax("Suction/Top", Constants.Suction.kMotorTopId, MotorType.kBrushless, Constants.CAN.kSuctionStatusFrames);
     m_motorTop.restoreFactoryDefaults();
     m_motorTop.setInverted(false);
     m_motorTop.setIdleMode(IdleMode.kBrake);
     m_motorTop.setSmartCurrentLimit(Constants.Suction.kCurrentLimit);
+    m_motorTop.applyStatusFrames();
 
     m_solenoidBottom = new Solenoid(PneumaticsModuleType.REVPH, Constants.Suction.kSolenoidBottomId);
     m_solenoidTop = new Solenoid(PneumaticsModuleType.REVPH, Constants.Suction.kSolenoidTopId);
 
-    SmartDashboard.putNumber("Suction/Bottom/Pressure/Minimum", Constants.Suction.kMinimumPressureBottom);
-    SmartDashboard.putNumber("Suction/Bottom/Pressure/Target", Constants.Suction.kTargetPressureBottom);
-    SmartDashboard.putNumber("Suction/Top/Pressure/Minimum", Constants.Suction.kMinimumPressureTop);
-    SmartDashboard.putNumber("Suction/Top/Pressure/Target", Constants.Suction.kTargetPressureTop);
+    SmartDashboard.putBoolean("Suction/IsEnabled", m_isEnabled);
+
+    Telemetry.addDouble("Suction/Bottom/Pressure/Current", () -> m_currentPressureBottom, 0.1, 0.1);
+    Telemetry.addDouble("Suction/Top/Pressure/Current", () -> m_currentPressureTop, 0.1, 0.1);
   }
 
   @Override
   public void periodic() {
+    m_loopTimer.start();
     double supplyVoltage = RobotController.getVoltage5V();
     m_currentPressureBottom = Utils.voltsToPsi(m_AnalogInputPressureBottom.getAverageVoltage(), supplyVoltage);
     m_currentPressureTop = Utils.voltsToPsi(m_AnalogInputPressureTop.getAverageVoltage(), supplyVoltage);
 
     //Automated reenabling of the suction system
     if (m_isEnabled) {
-      m_solenoidBottom.set(false);
-      m_solenoidTop.set(false);
+      setSolenoidsOpen(false);
       
       //We seperated the sensor statements so the motors only run when necessary and not when the individual one has enough pressure
       if (!m_isTargetPressureBottomReached) {
-        if (m_currentPressureBottom > Constants.Suction.kTargetPressureBottom) {
+        if (m_currentPressureBottom > m_targetPressureBottom.get()) {
           m_motorBottom.set(Constants.Suction.kMaxSpeed);
         } else {
           m_motorBottom.set(0);
           m_isTargetPressureBottomReached = true;
         }
       } else {
-        if (m_currentPressureBottom > Constants.Suction.kMinimumPressureBottom) {
+        if (m_currentPressureBottom > m_minimumPressureBottom.get()) {
           m_isTargetPressureBottomReached = false;
         }
       } 
 
       if (!m_isTargetPressureTopReached) {
-        if (m_currentPressureTop > Constants.Suction.kTargetPressureTop) {
+        if (m_currentPressureTop > m_targetPressureTop.get()) {
           m_motorTop.set(Constants.Suction.kMaxSpeed);
         } else {
           m_motorTop.set(0);
           m_isTargetPressureTopReached = true;
         }
       } else {
-        if (m_currentPressureTop > Constants.Suction.kMinimumPressureTop) {
+        if (m_currentPressureTop > m_minimumPressureTop.get()) {
           m_isTargetPressureTopReached = false;
         }
       } 
@@ -100,28 +116,39 @@ public class Suction extends SubsystemBase {
       if (m_isDisabling){
         m_motorTop.set(0);
         m_motorBottom.set(0);
-        m_solenoidBottom.set(true);
-        m_solenoidTop.set(true);
+        setSolenoidsOpen(true);
         m_isTargetPressureBottomReached = false;
         m_isTargetPressureTopReached = false;
         m_isDisabling = false;
-      } else {
-        reset();
       }
     } 
-
-    updateTelemetry();
+    m_loopTimer.stop();
   }
   
+  /** Opens or closes the release solenoids, only writing to the pneumatic hub on a change. */
+  private void setSolenoidsOpen(boolean isOpen) {
+    if (isOpen != m_isSolenoidOpen) {
+      m_solenoidBottom.set(isOpen);
+      m_solenoidTop.set(isOpen);
+      m_isSolenoidOpen = isOpen;
+    }
+  }
+
   public void enable() {  
-    m_isEnabled = true;
-    SmartDashboard.putBoolean("Suction/IsEnabled", m_isEnabled);
+    setEnabled(true);
   }
 
   public void disable() {
-    m_isEnabled = false;
+    setEnabled(false);
     m_isDisabling = true;
-    SmartDashboard.putBoolean("Suction/IsEnabled", m_isEnabled);
+  }
+
+  /** Sets the enabled flag, only publishing it to the dashboard when it changes. */
+  private void setEnabled(boolean isEnabled) {
+    if (isEnabled != m_isEnabled) {
+      m_isEnabled = isEnabled;
+      SmartDashboard.putBoolean("Suction/IsEnabled", m_isEnabled);
+    }
   }
 
   public void toggle() {
@@ -138,18 +165,17 @@ public class Suction extends SubsystemBase {
 
   public boolean hasMinVacuum() {
     return 
-      m_currentPressureBottom < Constants.Suction.kMinimumPressureBottom && 
-      m_currentPressureTop < Constants.Suction.kMinimumPressureTop;
+      m_currentPressureBottom < m_minimumPressureBottom.get() && 
+      m_currentPressureTop < m_minimumPressureTop.get();
   }
 
   public void reset() {
-    m_isEnabled = false;
+    setEnabled(false);
     m_isDisabling = false;
     m_isTargetPressureBottomReached = false;
     m_isTargetPressureTopReached = false;
     m_motorBottom.set(0);
     m_motorTop.set(0);
-    SmartDashboard.putBoolean("Suction/IsEnabled", m_isEnabled);
   }
 
   @Override
@@ -159,9 +185,4 @@ public class Suction extends SubsystemBase {
     builder.addDoubleProperty("Bottom/Motor/Speed", m_motorBottom::get, null);
     builder.addDoubleProperty("Top/Motor/Speed", m_motorTop::get, null);
   }
-
-  private void updateTelemetry() {
-    SmartDashboard.putNumber("Suction/Bottom/Pressure/Current", m_currentPressureBottom);
-    SmartDashboard.putNumber("Suction/Top/Pressure/Current", m_currentPressureTop);
-  }
 }
@@ -0,0 +1,150 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+class SwerveModuleStatesTest {
+  private static final double kMaxSpeed = 4.8;
+  private static final int kWarmUpIterations = 100_000;
+  private static final int kMeasuredIterations = 10_000;
+  private static final double[] kModuleX = { 0.3, 0.3, -0.3, -0.3 };
+  private static final double[] kModuleY = { 0.3, -0.3, 0.3, -0.3 };
+
+  // Field-relative speeds for the skew tests: driving diagonally while spinning fast.
+  private static final double kVx = 3.0;
+  private static final double kVy = 1.0;
+  private static final double kOmega = 4.0;
+  private static final int kSkewLoops = 150;
+
+  private final SwerveModuleStates m_states = new SwerveModuleStates(
+    new Translation2d(kModuleX[0], kModuleY[0]),
+    new Translation2d(kModuleX[1], kModuleY[1]),
+    new Translation2d(kModuleX[2], kModuleY[2]),
+    new Translation2d(kModuleX[3], kModuleY[3]));
+
+  private double m_sink = 0.0;
+
+  @Test
+  void driveMathDoesNotAllocateAfterWarmUp() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+
+    for (int i = 0; i < kWarmUpIterations; i += 1) {
+      runDriveMath(i);
+    }
+
+    // Reading the counter can allocate itself, so measure that and take it off.
+    long overheadStart = threadBean.getThreadAllocatedBytes(threadId);
+    long overhead = threadBean.getThreadAllocatedBytes(threadId) - overheadStart;
+
+    long start = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < kMeasuredIterations; i += 1) {
+      runDriveMath(i);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - start - overhead;
+
+    assertEquals(0, allocated, "bytes allocated by " + kMeasuredIterations + " drive loops");
+  }
+
+  private void runDriveMath(int i) {
+    double vx = (i % 100) * 0.05;
+    double vy = (i % 37) * -0.1;
+    double omega = (i % 13) * 0.5 - 3.0;
+    double heading = (i % 360) * Math.PI / 180;
+
+    m_states.fromChassisSpeeds(vx, vy, omega);
+    m_states.fromChassisSpeeds(vx, vy, omega, 0.02);
+    m_states.fromFieldRelativeSpeeds(vx, vy, omega, heading);
+    m_states.fromFieldRelativeSpeeds(vx, vy, omega, heading, 0.02);
+    m_states.desaturate(kMaxSpeed);
+    m_sink += m_states.speeds[0] + m_states.angles[3];
+  }
+
+  @Test
+  void skewCompensationKeepsThePathStraight() {
+    double[] compensated = simulateSkew(true);
+    double[] uncompensated = simulateSkew(false);
+
+    double[] expected = new double[3];
+    for (int i = 0; i < kSkewLoops; i += 1) {
+      double dt = getLoopPeriod(i);
+      expected[0] += kVx * dt;
+      expected[1] += kVy * dt;
+      expected[2] += kOmega * dt;
+    }
+
+    double compensatedError = Math.hypot(compensated[0] - expected[0], compensated[1] - expected[1]);
+    double uncompensatedError = Math.hypot(uncompensated[0] - expected[0], uncompensated[1] - expected[1]);
+
+    // The heading only depends on omega, so compensation must not change it.
+    assertEquals(expected[2], compensated[2], 1e-9, "final heading with compensation");
+    assertEquals(expected[2], uncompensated[2], 1e-9, "final heading without compensation");
+    assertEquals(0.0, compensatedError, 1e-6, "path error with compensation");
+    assertTrue(uncompensatedError > 0.05, "path error without compensation was only " + uncompensatedError + " m");
+  }
+
+  /**
+   * Drives at the field-relative test speeds for a number of loops of varying length, as
+   * the real loop does, holding each loop's module states for the whole loop.
+   *
+   * @return the final x, y and heading.
+   */
+  private double[] simulateSkew(boolean isCompensated) {
+    double[] pose = new double[3];
+    for (int i = 0; i < kSkewLoops; i += 1) {
+      double dt = getLoopPeriod(i);
+      if (isCompensated) {
+        m_states.fromFieldRelativeSpeeds(kVx, kVy, kOmega, pose[2], dt);
+      } else {
+        m_states.fromFieldRelativeSpeeds(kVx, kVy, kOmega, pose[2]);
+      }
+
+      // Back out the chassis speeds the modules produce. The layout is symmetric, so the
+      // least squares solution is a plain average.
+      double vx = 0.0;
+      double vy = 0.0;
+      double omega = 0.0;
+      double radiusSquared = 0.0;
+      for (int m = 0; m < m_states.size(); m += 1) {
+        double moduleVx = m_states.speeds[m] * Math.cos(m_states.angles[m]);
+        double moduleVy = m_states.speeds[m] * Math.sin(m_states.angles[m]);
+        vx += moduleVx / m_states.size();
+        vy += moduleVy / m_states.size();
+        omega += kModuleX[m] * moduleVy - kModuleY[m] * moduleVx;
+        radiusSquared += kModuleX[m] * kModuleX[m] + kModuleY[m] * kModuleY[m];
+      }
+      omega /= radiusSquared;
+
+      // Hold those speeds for the loop, which moves the robot along an arc.
+      double dtheta = omega * dt;
+      double sinTerm = Math.abs(dtheta) < 1e-9 ? 1.0 : Math.sin(dtheta) / dtheta;
+      double cosTerm = Math.abs(dtheta) < 1e-9 ? 0.0 : (1.0 - Math.cos(dtheta)) / dtheta;
+      double dx = (vx * sinTerm - vy * cosTerm) * dt;
+      double dy = (vx * cosTerm + vy * sinTerm) * dt;
+      pose[0] += dx * Math.cos(pose[2]) - dy * Math.sin(pose[2]);
+      pose[1] += dx * Math.sin(pose[2]) + dy * Math.cos(pose[2]);
+      pose[2] += dtheta;
+    }
+    return pose;
+  }
+
+  /** @return a loop period that jitters around 20 ms, like the measured period does. */
+  private static double getLoopPeriod(int loop) {
+    return 0.02 + 0.002 * ((loop % 3) - 1);
+  }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) 2023 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+import frc.robot.Constants;
+import frc.robot.lib.OdometrySampler;
+
+/**
+ * Runs the drive control path against the simulation HAL, so the SPARK MAX and NavX
+ * calls behind Drive and SwerveModule execute without hardware.
+ */
+class DriveTest {
+  private static final int kWarmUpIterations = 20_000;
+  private static final int kMeasuredIterations = 5_000;
+
+  private static Drive m_drive;
+
+  private final SwerveModulePosition[] m_positions = new SwerveModulePosition[] {
+    new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+  };
+  private final double[] m_distances = new double[4];
+  private final double[] m_angles = { 0.1, 0.2, 0.3, 0.4 };
+
+  @BeforeAll
+  static void setUp() {
+    assertTrue(HAL.initialize(500, 0));
+    m_drive = new Drive();
+  }
+
+  @Test
+  void fieldCentricDriveDoesNotAllocateAfterWarmUp() {
+    m_drive.setDriveMode(Drive.SwerveDriveMode.FIELD_CENTRIC);
+    assertDriveLoopDoesNotAllocate();
+  }
+
+  @Test
+  void robotCentricDriveDoesNotAllocateAfterWarmUp() {
+    m_drive.setDriveMode(Drive.SwerveDriveMode.ROBOT_CENTRIC);
+    assertDriveLoopDoesNotAllocate();
+  }
+
+  private void assertDriveLoopDoesNotAllocate() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+
+    // Limits on, so the setpoint generator is part of the measured path.
+    m_drive.setSetpointLimits(Constants.Drive.kTeleopSetpointLimits);
+    for (int i = 0; i < kWarmUpIterations; i += 1) {
+      runDriveLoop(i);
+    }
+
+    // Reading the counter can allocate itself, so measure that and take it off.
+    long overheadStart = threadBean.getThreadAllocatedBytes(threadId);
+    long overhead = threadBean.getThreadAllocatedBytes(threadId) - overheadStart;
+
+    long start = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < kMeasuredIterations; i += 1) {
+      runDriveLoop(i);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - start - overhead;
+    m_drive.stop();
+
+    assertEquals(0, allocated, "bytes allocated by " + kMeasuredIterations + " drive loops");
+  }
+
+  /**
+   * One loop of the drive path: drive() through heading hold, skew compensation, the
+   * setpoint generator and every SwerveModule.setDesiredState(), then an odometry sample
+   * copied into the reused module positions, as updatePose() does.
+   */
+  private void runDriveLoop(int i) {
+    double xSpeed = (i % 100) * 0.03;
+    double ySpeed = (i % 37) * -0.05;
+    // Every third loop has no rotation input, so the heading hold runs too.
+    double rot = i % 3 == 0 ? 0.0 : (i % 13) * 0.4 - 2.4;
+    m_drive.drive(xSpeed, ySpeed, rot);
+
+    for (int m = 0; m < m_distances.length; m += 1) {
+      m_distances[m] += xSpeed * 0.02;
+    }
+    OdometrySampler.copyPositions(m_distances, m_angles, m_positions);
+  }
+}